@@ -0,0 +1,8 @@
+#!/bin/sh
+# Runs the benchmarks with the GC profiler and compares them with baseline/baseline.json.
+# Extra arguments go to JMH, e.g. ./check.sh AcceptsBenchmark -p states=10,1000
+# Exits non-zero if any benchmark regressed by more than the tolerance (BENCH_TOLERANCE, default 0.10).
+set -e
+cd "$(dirname "$0")"
+java -jar target/benchmarks.jar -prof gc -rf json -rff target/results.json "$@"
+java -cp target/benchmarks.jar fa.bench.BaselineCheck target/results.json baseline/baseline.json "${BENCH_TOLERANCE:-0.10}"
@@ -0,0 +1,81 @@
+package fa.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+
+/**
+ * DFA.accepts on short, long and adversarial inputs, and the long input on the compiled table.
+ * The long inputs are one char short of the parallel threshold, so every DFA is matched sequentially;
+ * compiledAcceptsParallel measures the parallel path on the same input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class AcceptsBenchmark {
+
+    /** Just below CompiledDFA.DEFAULT_PARALLEL_MIN_LENGTH, so accepts never switches to parallel matching */
+    private static final int LONG = CompiledDFA.DEFAULT_PARALLEL_MIN_LENGTH - 1;
+
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    private DFA dfa;
+    private CompiledDFA compiled;
+    private String shortInput;
+    private String longInput;
+    private String adversarialInput;
+
+    @Setup
+    public void setup() {
+        dfa = Fixtures.build(shape, states);
+        compiled = dfa.freeze();
+        shortInput = Fixtures.randomInput(16, 1);
+        longInput = Fixtures.randomInput(LONG, 2);
+        adversarialInput = Fixtures.adversarialInput(shape, states, LONG);
+    }
+
+    @Benchmark
+    public boolean acceptsShort() {
+        return dfa.accepts(shortInput);
+    }
+
+    @Benchmark
+    public boolean acceptsLong() {
+        return dfa.accepts(longInput);
+    }
+
+    @Benchmark
+    public boolean acceptsAdversarial() {
+        return dfa.accepts(adversarialInput);
+    }
+
+    @Benchmark
+    public boolean compiledAcceptsLong() {
+        return compiled.accepts(longInput);
+    }
+
+    @Benchmark
+    public boolean compiledAcceptsParallel() {
+        return compiled.acceptsParallel(longInput);
+    }
+}
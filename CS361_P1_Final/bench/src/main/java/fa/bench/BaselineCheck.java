@@ -0,0 +1,208 @@
+package fa.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against the stored baseline and fails on a slowdown.
+ *
+ * Usage: BaselineCheck results.json baseline.json [tolerance]
+ *
+ * A benchmark regresses when its score is worse than the baseline by more than the tolerance
+ * (10% by default), or when its normalized allocation rate from the GC profiler grows by more
+ * than the tolerance and more than 16 bytes per operation. If the baseline file does not exist
+ * yet, the results are stored as the new baseline.
+ */
+public final class BaselineCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineCheck results.json baseline.json [tolerance]");
+            System.exit(2);
+        }
+        Path results = Path.of(args[0]);
+        Path baseline = Path.of(args[1]);
+        double tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : 0.10;
+
+        if (!Files.exists(baseline)) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("No baseline yet, recorded " + baseline);
+            return;
+        }
+
+        Map<String, Map<String, Object>> base = index(Files.readString(baseline));
+        Map<String, Map<String, Object>> now = index(Files.readString(results));
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : now.entrySet()) {
+            Map<String, Object> old = base.get(entry.getKey());
+            if (old == null) {
+                System.out.println("NEW   " + entry.getKey());
+                continue;
+            }
+            Map<String, Object> cur = entry.getValue();
+            double oldScore = score(old, "primaryMetric");
+            double newScore = score(cur, "primaryMetric");
+            boolean higherIsBetter = "thrpt".equals(cur.get("mode"));
+            double change = (newScore - oldScore) / oldScore;
+            boolean slower = higherIsBetter ? change < -tolerance : change > tolerance;
+            System.out.printf("%s %s %.3f -> %.3f (%+.1f%%)%n", slower ? "SLOWER" : "ok    ",
+                    entry.getKey(), oldScore, newScore, change * 100);
+            if (slower) regressions.add(entry.getKey());
+
+            double oldAlloc = allocation(old);
+            double newAlloc = allocation(cur);
+            if (!Double.isNaN(oldAlloc) && !Double.isNaN(newAlloc)
+                    && newAlloc > oldAlloc * (1 + tolerance) && newAlloc - oldAlloc > 16) {
+                System.out.printf("ALLOC  %s %.1f -> %.1f B/op%n", entry.getKey(), oldAlloc, newAlloc);
+                regressions.add(entry.getKey() + " (allocation)");
+            }
+        }
+        if (!regressions.isEmpty()) {
+            System.out.println(regressions.size() + " regression(s) against " + baseline);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baseline);
+    }
+
+    // keys each result by benchmark name plus its sorted parameters
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> index(String json) {
+        Map<String, Map<String, Object>> byKey = new LinkedHashMap<>();
+        for (Object item : (List<Object>) new Json(json).parse()) {
+            Map<String, Object> result = (Map<String, Object>) item;
+            StringBuilder key = new StringBuilder((String) result.get("benchmark"));
+            Object params = result.get("params");
+            if (params != null) {
+                new TreeMap<>((Map<String, Object>) params).forEach((k, v) -> key.append(' ').append(k).append('=').append(v));
+            }
+            byKey.put(key.toString(), result);
+        }
+        return byKey;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double score(Map<String, Object> result, String metric) {
+        return toDouble(((Map<String, Object>) result.get(metric)).get("score"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double allocation(Map<String, Object> result) {
+        Map<String, Object> secondary = (Map<String, Object>) result.get("secondaryMetrics");
+        if (secondary == null) return Double.NaN;
+        for (Map.Entry<String, Object> metric : secondary.entrySet()) {
+            if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+                return toDouble(((Map<String, Object>) metric.getValue()).get("score"));
+            }
+        }
+        return Double.NaN;
+    }
+
+    // JMH writes scores it could not compute as the string "NaN"
+    private static double toDouble(Object value) {
+        return (value instanceof Number) ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    /**
+     * Just enough of a JSON reader for JMH result files: objects, arrays, strings, numbers, booleans and null.
+     */
+    private static final class Json {
+        private final String text;
+        private int pos;
+
+        Json(String text) {
+            this.text = text;
+        }
+
+        Object parse() {
+            skipSpace();
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': pos += 4; return Boolean.TRUE;
+                case 'f': pos += 5; return Boolean.FALSE;
+                case 'n': pos += 4; return null;
+                default: return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (text.charAt(pos) == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                pos++; // ':'
+                map.put(key, parse());
+                skipSpace();
+                if (text.charAt(pos++) == '}') return map;
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (text.charAt(pos) == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(parse());
+                skipSpace();
+                if (text.charAt(pos++) == ']') return list;
+            }
+        }
+
+        private String string() {
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while (true) {
+                char c = text.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c == '\\') {
+                    char e = text.charAt(pos++);
+                    switch (e) {
+                        case 'n': sb.append('\n'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 'b': sb.append('\b'); break;
+                        case 'f': sb.append('\f'); break;
+                        case 'u':
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                            break;
+                        default: sb.append(e);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+
+        private Object number() {
+            int startPos = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+            return Double.parseDouble(text.substring(startPos, pos));
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+    }
+}
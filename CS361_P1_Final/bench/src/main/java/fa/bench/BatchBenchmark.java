@@ -0,0 +1,87 @@
+package fa.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.CompiledDFA;
+
+/**
+ * A batch of 100,000 strings: acceptsAll against one accepts call per string.
+ * The strings either share long prefixes, as keys or paths from one source do, or are unrelated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class BatchBenchmark {
+    private static final int BATCH = 100_000;
+
+    @Param({ "1000", "100000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    @Param({ "shared", "random" })
+    public String prefixes;
+
+    private CompiledDFA compiled;
+    private List<String> batch;
+
+    @Setup
+    public void setup() {
+        compiled = Fixtures.build(shape, states).freeze();
+        Random random = new Random(9);
+        batch = new ArrayList<>(BATCH);
+        if (prefixes.equals("shared")) {
+            // 64 prefixes of 200 chars, each followed by 16 random chars
+            String[] heads = new String[64];
+            for (int i = 0; i < heads.length; i++) {
+                heads[i] = Fixtures.randomInput(200, 100 + i);
+            }
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(heads[random.nextInt(heads.length)] + Fixtures.randomInput(16, i));
+            }
+        } else {
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(Fixtures.randomInput(216, i));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean[] loop() {
+        boolean[] result = new boolean[batch.size()];
+        int i = 0;
+        for (String s : batch) {
+            result[i++] = compiled.accepts(s);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public boolean[] acceptsAll() {
+        return compiled.acceptsAll(batch);
+    }
+
+    @Benchmark
+    public boolean[] acceptsAllParallel() {
+        return compiled.acceptsAll(batch, true);
+    }
+}
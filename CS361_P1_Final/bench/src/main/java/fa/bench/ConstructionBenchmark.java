@@ -0,0 +1,59 @@
+package fa.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.DFA;
+
+/**
+ * Building a DFA through addState, setStart, setFinal and addTransition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ConstructionBenchmark {
+
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    @Benchmark
+    public DFA build() {
+        return Fixtures.build(shape, states);
+    }
+
+    /**
+     * The modulo shape built through state ids and bulk addTransitions, to compare with build().
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+    public static class ById {
+
+        @Param({ "10", "1000", "100000", "1000000" })
+        public int states;
+
+        @Benchmark
+        public DFA buildModulo() {
+            return Fixtures.moduloByIds(states);
+        }
+    }
+}
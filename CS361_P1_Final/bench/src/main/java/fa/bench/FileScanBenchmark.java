@@ -0,0 +1,112 @@
+package fa.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.DFA;
+
+/**
+ * Checking a file by reading it into a String and calling accepts, against DFA.acceptsFile
+ * which memory-maps it. Files larger than a String can hold only run through acceptsFile,
+ * see {@link Large}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class FileScanBenchmark {
+
+    @Param({ "64", "1024" })
+    public int megabytes;
+
+    protected DFA dfa;
+    protected Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        dfa = Fixtures.modulo(10);
+        file = writeInput(megabytes);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean readStringThenAccepts() throws IOException {
+        return dfa.accepts(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public boolean acceptsFile() throws IOException {
+        return dfa.acceptsFile(file);
+    }
+
+    /**
+     * acceptsFile alone on multi-gigabyte files.
+     */
+    public static class Large {
+
+        @State(Scope.Benchmark)
+        public static class Input {
+            @Param({ "4096", "8192" })
+            public int megabytes;
+
+            DFA dfa;
+            Path file;
+
+            @Setup
+            public void setup() throws IOException {
+                dfa = Fixtures.modulo(10);
+                file = writeInput(megabytes);
+            }
+
+            @TearDown
+            public void tearDown() throws IOException {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Benchmark
+        @BenchmarkMode(Mode.SingleShotTime)
+        @OutputTimeUnit(TimeUnit.MILLISECONDS)
+        @Warmup(iterations = 1)
+        @Measurement(iterations = 3)
+        @Fork(value = 1, jvmArgsAppend = { "-Xmx1g" })
+        public boolean acceptsFile(Input input) throws IOException {
+            return input.dfa.acceptsFile(input.file);
+        }
+    }
+
+    // a random binary number of the given size, in 1MB pieces
+    static Path writeInput(int megabytes) throws IOException {
+        Path file = Files.createTempFile("fa-bench", ".txt");
+        String block = Fixtures.randomInput(1 << 20, megabytes);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < megabytes; i++) {
+                out.write(block);
+            }
+        }
+        return file;
+    }
+}
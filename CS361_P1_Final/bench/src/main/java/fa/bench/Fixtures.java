@@ -0,0 +1,229 @@
+package fa.bench;
+
+import java.util.Random;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+
+/**
+ * Synthetic DFAs of any size, scaled up from the dfa1, dfa2 and dfa3 fixtures in DFATest.
+ * All of them use the alphabet {0, 1} and name their states q0, q1, ...
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Builds a DFA of the given shape.
+     * @param shape "modulo", "substring" or "branches"
+     * @param states the number of states, at least 3
+     * @return the new DFA
+     */
+    static DFA build(String shape, int states) {
+        switch (shape) {
+            case "modulo": return modulo(states);
+            case "substring": return substring(states);
+            case "branches": return branches(states);
+            default: throw new IllegalArgumentException("unknown shape: " + shape);
+        }
+    }
+
+    /**
+     * Like dfa1 (every state has both transitions and they mix all states): reads the input as a
+     * binary number and accepts when its remainder modulo states is odd.
+     */
+    static DFA modulo(int states) {
+        DFA dfa = base(states);
+        for (int i = 0; i < states; i++) {
+            dfa.addTransition("q" + i, "q" + ((2 * i) % states), '0');
+            dfa.addTransition("q" + i, "q" + ((2 * i + 1) % states), '1');
+            if (i % 2 == 1) dfa.setFinal("q" + i);
+        }
+        return dfa;
+    }
+
+    /**
+     * The modulo DFA built through state ids and one bulk addTransitions call instead of names.
+     */
+    static DFA moduloByIds(int states) {
+        DFA dfa = new DFA();
+        dfa.addSigma('0');
+        dfa.addSigma('1');
+        for (int i = 0; i < states; i++) {
+            dfa.newState("q" + i);
+        }
+        dfa.setStart(0);
+        int[] from = new int[2 * states];
+        int[] to = new int[2 * states];
+        char[] symbols = new char[2 * states];
+        for (int i = 0; i < states; i++) {
+            from[i] = i;
+            to[i] = (2 * i) % states;
+            symbols[i] = '0';
+            from[states + i] = i;
+            to[states + i] = (2 * i + 1) % states;
+            symbols[states + i] = '1';
+            if (i % 2 == 1) dfa.setFinal(i);
+        }
+        dfa.addTransitions(from, to, symbols);
+        return dfa;
+    }
+
+    /**
+     * Like dfa2 (accepts strings containing 00): accepts strings containing states - 1 zeros in a row,
+     * with the last state as an accepting sink.
+     */
+    static DFA substring(int states) {
+        DFA dfa = base(states);
+        for (int i = 0; i < states - 1; i++) {
+            dfa.addTransition("q" + i, "q" + (i + 1), '0');
+            dfa.addTransition("q" + i, "q0", '1');
+        }
+        dfa.addTransition("q" + (states - 1), "q" + (states - 1), '0');
+        dfa.addTransition("q" + (states - 1), "q" + (states - 1), '1');
+        dfa.setFinal("q" + (states - 1));
+        return dfa;
+    }
+
+    /**
+     * Like dfa3 (the first symbol picks one of two mirrored halves): the first symbol picks one of two
+     * cycles, and the run accepts when it ends on the last state of its cycle.
+     */
+    static DFA branches(int states) {
+        DFA dfa = base(states);
+        int half = (states - 1) / 2;
+        int other = states - 1 - half;
+        dfa.addTransition("q0", "q1", '1');
+        dfa.addTransition("q0", "q" + (1 + half), '0');
+        for (int i = 0; i < half; i++) {
+            String from = "q" + (1 + i);
+            dfa.addTransition(from, "q" + (1 + (i + 1) % half), '1');
+            dfa.addTransition(from, from, '0');
+        }
+        for (int i = 0; i < other; i++) {
+            String from = "q" + (1 + half + i);
+            dfa.addTransition(from, "q" + (1 + half + (i + 1) % other), '0');
+            dfa.addTransition(from, from, '1');
+        }
+        dfa.setFinal("q" + half);
+        dfa.setFinal("q" + (states - 1));
+        return dfa;
+    }
+
+    /**
+     * A DFA of the given shape with its states added in random order, so that state ids say nothing
+     * about which states follow each other, as in automata generated from large rule sets.
+     */
+    static DFA shuffled(String shape, int states, long seed) {
+        CompiledDFA source = build(shape, states).freeze();
+        int[] order = new int[states];
+        for (int i = 0; i < states; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = states - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        int[] newId = new int[states];
+        DFA dfa = new DFA();
+        dfa.addSigma('0');
+        dfa.addSigma('1');
+        for (int i = 0; i < states; i++) {
+            newId[order[i]] = dfa.newState(source.stateName(order[i]));
+        }
+        dfa.setStart(newId[source.startState()]);
+        for (int q = 0; q < states; q++) {
+            if (source.isFinal(q)) dfa.setFinal(newId[q]);
+            for (char c : new char[] { '0', '1' }) {
+                int t = source.step(q, c);
+                if (t != CompiledDFA.DEAD) dfa.addTransition(newId[q], newId[t], c);
+            }
+        }
+        return dfa;
+    }
+
+    /**
+     * A DFA over a large alphabet with random transitions, so that few symbols share a class
+     * and the transition table is about states x symbols entries.
+     */
+    static DFA wide(int states, int symbols, long seed) {
+        Random random = new Random(seed);
+        DFA dfa = new DFA();
+        for (int j = 0; j < symbols; j++) {
+            dfa.addSigma((char) ('!' + j));
+        }
+        for (int i = 0; i < states; i++) {
+            dfa.newState("q" + i);
+            if (random.nextInt(4) == 0) dfa.setFinal(i);
+        }
+        dfa.setStart(0);
+        int[] from = new int[states];
+        int[] to = new int[states];
+        char[] on = new char[states];
+        for (int j = 0; j < symbols; j++) {
+            for (int i = 0; i < states; i++) {
+                from[i] = i;
+                to[i] = random.nextInt(states);
+                on[i] = (char) ('!' + j);
+            }
+            dfa.addTransitions(from, to, on);
+        }
+        return dfa;
+    }
+
+    /**
+     * @return a random string over the first symbols chars of the wide alphabet
+     */
+    static String randomWideInput(int length, int symbols, long seed) {
+        Random random = new Random(seed);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('!' + random.nextInt(symbols));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return a random string over {0, 1}
+     */
+    static String randomInput(int length, long seed) {
+        Random random = new Random(seed);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = random.nextBoolean() ? '1' : '0';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * An input that keeps the run alive for its whole length and is finally rejected, so early exits never help.
+     * For the substring shape it repeatedly almost completes the run of zeros.
+     */
+    static String adversarialInput(String shape, int states, int length) {
+        StringBuilder sb = new StringBuilder(length + states);
+        if (shape.equals("substring")) {
+            String block = "0".repeat(Math.max(0, Math.min(states - 2, length - 1))) + "1";
+            while (sb.length() < length) sb.append(block);
+        } else {
+            sb.append(randomInput(length, 42));
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    private static DFA base(int states) {
+        if (states < 3) throw new IllegalArgumentException("need at least 3 states: " + states);
+        DFA dfa = new DFA();
+        dfa.addSigma('0');
+        dfa.addSigma('1');
+        for (int i = 0; i < states; i++) {
+            dfa.addState("q" + i);
+        }
+        dfa.setStart("q0");
+        return dfa;
+    }
+}
@@ -0,0 +1,147 @@
+package fa.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+import fa.dfa.OffHeapDFA;
+
+/**
+ * GC pause times while a large 200-symbol transition table is live, kept on the heap by freeze against
+ * off the heap by freezeOffHeap. Only the frozen form is kept; the DFA it came from is dropped.
+ *
+ * fullGc times one System.gc() per operation, so its score is the pause of a full collection.
+ * acceptsWithGarbage matches while allocating short-lived garbage, and its secondary results
+ * pauseMillis, maxPauseMillis and pauses are the stop-the-world pauses the collector reported during
+ * each iteration, as read from the GarbageCollectorMXBean notifications.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-XX:MaxDirectMemorySize=8g" })
+public class GcPauseBenchmark {
+    private static final int SYMBOLS = 200;
+
+    @Param({ "1000000", "2000000" })
+    public int states;
+
+    @Param({ "heap", "offheap" })
+    public String storage;
+
+    private CompiledDFA heap;
+    private OffHeapDFA offHeap;
+    private String input;
+
+    @Setup
+    public void setup() {
+        DFA dfa = Fixtures.wide(states, SYMBOLS, 7);
+        if (storage.equals("heap")) {
+            heap = dfa.freeze();
+        } else {
+            offHeap = dfa.freezeOffHeap();
+        }
+        input = Fixtures.randomWideInput(4096, SYMBOLS, 11);
+        // drop the DFA before measuring, so only the frozen table stays live
+        System.gc();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (offHeap != null) offHeap.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 5)
+    @Measurement(iterations = 5, time = 5)
+    public boolean acceptsWithGarbage(Pauses pauses, Blackhole blackhole) {
+        // a per-request copy of the input, as a decoded request body would be; consumed so it is really allocated
+        String request = new StringBuilder(input).toString();
+        blackhole.consume(request);
+        return (heap != null) ? heap.accepts(request) : offHeap.accepts(request);
+    }
+
+    /**
+     * The collector pauses of one iteration, reported by JMH as secondary results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Pauses implements NotificationListener {
+        public long pauseMillis;
+        public long maxPauseMillis;
+        public long pauses;
+
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+        @Setup(Level.Iteration)
+        public void listen() {
+            pauseMillis = 0;
+            maxPauseMillis = 0;
+            pauses = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (bean instanceof NotificationEmitter) {
+                    ((NotificationEmitter) bean).addNotificationListener(this, null, null);
+                    emitters.add((NotificationEmitter) bean);
+                }
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() throws ListenerNotFoundException {
+            for (NotificationEmitter emitter : emitters) {
+                emitter.removeNotificationListener(this);
+            }
+            emitters.clear();
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            String type = notification.getType();
+            if (!type.equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            // concurrent cycles run beside the application and do not stop it
+            if (info.getGcName().contains("Concurrent") || info.getGcCause().contains("Concurrent")) return;
+            long duration = info.getGcInfo().getDuration();
+            pauseMillis += duration;
+            maxPauseMillis = Math.max(maxPauseMillis, duration);
+            pauses++;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fa.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.DFA;
+import fa.dfa.MappedDFA;
+
+/**
+ * Startup cost: rebuilding a DFA through the builder methods against mapping a saved binary file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class LoadBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("load", ".dfa");
+        Fixtures.build(shape, states).writeTo(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public DFA rebuild() {
+        DFA dfa = Fixtures.build(shape, states);
+        dfa.freeze();
+        return dfa;
+    }
+
+    @Benchmark
+    public MappedDFA mapped() throws IOException {
+        return MappedDFA.load(file);
+    }
+}
@@ -0,0 +1,73 @@
+package fa.bench;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+import fa.dfa.DFASet;
+
+/**
+ * Matching one input against many DFAs: a DFASet pass against one accepts call per DFA.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class MultiMatchBenchmark {
+
+    @Param({ "10", "300" })
+    public int dfas;
+
+    @Param({ "1000", "100000" })
+    public int length;
+
+    private CompiledDFA[] compiled;
+    private DFASet set;
+    private String input;
+
+    @Setup
+    public void setup() {
+        List<DFA> list = new ArrayList<>();
+        String[] shapes = { "modulo", "substring", "branches" };
+        for (int i = 0; i < dfas; i++) {
+            list.add(Fixtures.build(shapes[i % shapes.length], 10 + i));
+        }
+        compiled = new CompiledDFA[dfas];
+        for (int i = 0; i < dfas; i++) {
+            compiled[i] = list.get(i).freeze();
+        }
+        set = new DFASet(list);
+        input = Fixtures.randomInput(length, 5);
+    }
+
+    @Benchmark
+    public BitSet separate() {
+        BitSet result = new BitSet(dfas);
+        for (int i = 0; i < compiled.length; i++) {
+            if (compiled[i].accepts(input)) result.set(i);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public BitSet onePass() {
+        return set.matches(input);
+    }
+}
@@ -0,0 +1,72 @@
+package fa.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.OffHeapDFA;
+
+/**
+ * Matching on a large transition table kept on the heap against the same table off the heap,
+ * while every operation also allocates short-lived garbage the way request handling does.
+ * Run with -prof gc and compare gc.count and gc.time between the two storages: with the table
+ * off the heap, the collector has gigabytes less live data to account for when sizing and collecting the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-XX:MaxDirectMemorySize=8g" })
+public class OffHeapBenchmark {
+    private static final int SYMBOLS = 200;
+
+    @Param({ "100000", "1000000", "2000000" })
+    public int states;
+
+    @Param({ "heap", "offheap" })
+    public String storage;
+
+    private CompiledDFA heap;
+    private OffHeapDFA offHeap;
+    private String input;
+
+    @Setup
+    public void setup() {
+        CompiledDFA compiled = Fixtures.wide(states, SYMBOLS, 7).freeze();
+        if (storage.equals("heap")) {
+            heap = compiled;
+        } else {
+            offHeap = compiled.toOffHeap();
+        }
+        input = Fixtures.randomWideInput(4096, SYMBOLS, 11);
+        // drop the builder and, for offheap, the heap table before measuring
+        System.gc();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (offHeap != null) offHeap.close();
+    }
+
+    @Benchmark
+    public boolean acceptsWithGarbage(Blackhole blackhole) {
+        // a per-request copy of the input, as a decoded request body would be; consumed so it is really allocated
+        String request = new StringBuilder(input).toString();
+        blackhole.consume(request);
+        return (heap != null) ? heap.accepts(request) : offHeap.accepts(request);
+    }
+}
@@ -0,0 +1,67 @@
+package fa.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+
+/**
+ * DFA.accepts with profiling off and on, against the compiled table it runs on.
+ * With profiling off, accepts should score the same as compiled; profiled shows the cost of counting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ProfilingBenchmark {
+
+    @Param({ "10", "100000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    private CompiledDFA compiled;
+    private DFA plain;
+    private DFA profiled;
+    private String input;
+
+    @Setup
+    public void setup() {
+        plain = Fixtures.build(shape, states);
+        compiled = plain.freeze();
+        profiled = Fixtures.build(shape, states);
+        profiled.enableProfiling();
+        // shorter than the parallel threshold, so every variant runs the sequential loop
+        input = Fixtures.randomInput(1 << 16, 7);
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.accepts(input);
+    }
+
+    @Benchmark
+    public boolean profilingOff() {
+        return plain.accepts(input);
+    }
+
+    @Benchmark
+    public boolean profilingOn() {
+        return profiled.accepts(input);
+    }
+}
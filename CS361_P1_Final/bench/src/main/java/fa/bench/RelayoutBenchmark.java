@@ -0,0 +1,72 @@
+package fa.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFAProfiler;
+
+/**
+ * accepts on a 1,000,000-state DFA whose state ids were shuffled, as compiled and after each relayout.
+ * The profile layout is trained on a random input, not on the one measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class RelayoutBenchmark {
+
+    @Param({ "1000000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    @Param({ "original", "breadthFirst", "depthFirst", "profile" })
+    public String layout;
+
+    private CompiledDFA compiled;
+    private String input;
+
+    @Setup
+    public void setup() {
+        CompiledDFA original = Fixtures.shuffled(shape, states, 11).freeze();
+        switch (layout) {
+            case "original":
+                compiled = original;
+                break;
+            case "breadthFirst":
+                compiled = original.relayoutBreadthFirst();
+                break;
+            case "depthFirst":
+                compiled = original.relayoutDepthFirst();
+                break;
+            case "profile":
+                DFAProfiler profiler = new DFAProfiler(original);
+                profiler.accepts(Fixtures.randomInput(1 << 20, 12));
+                compiled = original.relayout(profiler.snapshot());
+                break;
+            default:
+                throw new IllegalArgumentException("unknown layout: " + layout);
+        }
+        input = Fixtures.adversarialInput(shape, states, 1 << 20);
+    }
+
+    @Benchmark
+    public boolean accepts() {
+        return compiled.accepts(input);
+    }
+}
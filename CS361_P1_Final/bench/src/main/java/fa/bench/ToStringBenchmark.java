@@ -0,0 +1,60 @@
+package fa.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fa.dfa.DFA;
+
+/**
+ * DFA.toString, and the same text streamed to a Writer, on DFAs of growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ToStringBenchmark {
+
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int states;
+
+    @Param({ "modulo", "substring", "branches" })
+    public String shape;
+
+    private DFA dfa;
+
+    @Setup
+    public void setup() {
+        dfa = Fixtures.build(shape, states);
+    }
+
+    @Benchmark
+    public String toStringBench() {
+        return dfa.toString();
+    }
+
+    /**
+     * Streams the same text into a buffered writer that discards it, so only the writing is measured.
+     */
+    @Benchmark
+    public void streamToWriter() throws IOException {
+        Writer out = new BufferedWriter(Writer.nullWriter(), 1 << 16);
+        dfa.writeText(out);
+        out.flush();
+    }
+}
@@ -1,5 +1,10 @@
 package fa;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.Set;
 
 
@@ -42,6 +47,41 @@ public interface FAInterface {
 	 */
 	public abstract boolean accepts(String s);
 	
+	/**
+	 * Simulates the FA on a character sequence without copying it.
+	 * @param s - the input characters
+	 * @return true if s in the language of the FA and false otherwise
+	 */
+	public boolean accepts(CharSequence s);
+	
+	/**
+	 * Simulates the FA on the remaining characters of a buffer.
+	 * The buffer's position is left unchanged.
+	 * @param buf - the input characters between position and limit
+	 * @return true if the input is in the language of the FA and false otherwise
+	 */
+	public boolean accepts(CharBuffer buf);
+	
+	/**
+	 * Simulates the FA on everything a reader produces, reading it in
+	 * fixed-size chunks. Reading stops as soon as the outcome is decided,
+	 * so the reader may be left partially consumed.
+	 * @param in - the input source
+	 * @return true if the input is in the language of the FA and false otherwise
+	 * @throws IOException if reading fails
+	 */
+	public boolean accepts(Reader in) throws IOException;
+	
+	/**
+	 * Simulates the FA on a byte stream decoded with the given charset,
+	 * reading it in fixed-size chunks. Reading stops as soon as the outcome is decided.
+	 * @param in - the encoded input
+	 * @param charset - the encoding of the input
+	 * @return true if the decoded input is in the language of the FA and false otherwise
+	 * @throws IOException if reading fails or the input is not valid in the charset
+	 */
+	public boolean accepts(InputStream in, Charset charset) throws IOException;
+	
 	
 	/**
 	 * Getter for Sigma
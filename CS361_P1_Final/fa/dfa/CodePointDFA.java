@@ -0,0 +1,188 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, table-driven form of a {@link DFA} that reads its input as Unicode code points,
+ * produced by {@link DFA#freezeCodePoints()}.
+ *
+ * Both the char symbols of Sigma and the code point range transitions of the DFA are used: a surrogate
+ * pair is one code point, and on a code point that is a symbol of Sigma a state follows its char
+ * transition if it has one, and its ranges otherwise. An unpaired surrogate is read as a code point
+ * of its own, as {@link Character#codePointAt(CharSequence, int)} does.
+ *
+ * The symbols of Sigma go through the same flat symbol class table as {@link CompiledDFA}. The ranges
+ * are kept apart, per state, as lo, hi, target triples sorted by lo, so a state that has no char transition
+ * on a code point finds its range with a binary search over its own ranges. Memory and build time grow
+ * with the number of ranges, however many states have them and however many code points they cover.
+ *
+ * Instances are deeply immutable and can be shared between threads.
+ */
+public final class CodePointDFA {
+    private final String[] stateNames;
+    private final boolean[] finals;
+    private final int start;
+    private final SymbolClasses classes;
+    private final int classCount;
+    /** Flat transition table of the symbols of Sigma, row-major by state, one column per class */
+    private final int[] delta;
+    /** The ranges of state q are the triples ranges[rangeStart[q] * 3 .. rangeStart[q + 1] * 3) */
+    private final int[] rangeStart;
+    private final int[] ranges;
+
+    /**
+     * Builds the code point form of a DFA's table.
+     * @param table the states, symbols and ranges
+     * @param classes the symbol classes of the table's columns
+     * @param classCount the number of classes, including class 0
+     * @param delta the class transition table of the table, as built by {@link TransitionTable#classTable}
+     */
+    CodePointDFA(TransitionTable table, SymbolClasses classes, int classCount, int[] delta) {
+        final int n = table.stateCount;
+        stateNames = Arrays.copyOf(table.names, n);
+        finals = new boolean[n];
+        for (int q = 0; q < n; q++) {
+            finals[q] = table.finals.get(q);
+        }
+        start = table.start;
+        this.classes = classes;
+        this.classCount = classCount;
+        this.delta = delta;
+
+        // the per-state range arrays laid end to end; they are already sorted and never overlap
+        rangeStart = new int[n + 1];
+        ranges = new int[table.rangeCount * 3];
+        int used = 0;
+        for (int q = 0; q < n; q++) {
+            rangeStart[q] = used / 3;
+            int[] r = (table.ranges == null) ? null : table.ranges[q];
+            if (r == null) continue;
+            System.arraycopy(r, 0, ranges, used, r.length);
+            used += r.length;
+        }
+        rangeStart[n] = used / 3;
+    }
+
+    // the target of state q on a code point through its ranges, or DEAD
+    private int rangeTarget(int q, int codePoint) {
+        int lo = rangeStart[q];
+        int hi = rangeStart[q + 1] - 1;
+        // the last range starting at or before codePoint is the only one that can hold it
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ranges[mid * 3] <= codePoint) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return (hi >= rangeStart[q] && codePoint <= ranges[hi * 3 + 1]) ? ranges[hi * 3 + 2] : CompiledDFA.DEAD;
+    }
+
+    /**
+     * Looks up the symbol class of a code point. Ranges have no class, since they are looked up per state.
+     * @param codePoint a code point
+     * @return its class id, 0 if it is not a symbol of Sigma or no state has a char transition on it
+     */
+    public int classOf(int codePoint) {
+        return (codePoint >= 0 && codePoint <= Character.MAX_VALUE) ? classes.classOf((char) codePoint) : 0;
+    }
+
+    /**
+     * Checks if the code points of a string are accepted by the DFA
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean accepts(CharSequence s) {
+        int state = start;
+        if (state == CompiledDFA.DEAD) return false;
+        final int[] delta = this.delta;
+        final int width = classCount;
+        final int n = s.length();
+        for (int i = 0; i < n; ) {
+            char c = s.charAt(i++);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i < n) {
+                char low = s.charAt(i);
+                if (Character.isLowSurrogate(low)) {
+                    codePoint = Character.toCodePoint(c, low);
+                    i++;
+                }
+            }
+            int next = (codePoint <= Character.MAX_VALUE) ? delta[state * width + classes.classOf((char) codePoint)]
+                    : CompiledDFA.DEAD;
+            state = (next == CompiledDFA.DEAD) ? rangeTarget(state, codePoint) : next;
+            if (state == CompiledDFA.DEAD) return false;
+        }
+        return finals[state];
+    }
+
+    /**
+     * Checks if a sequence of code points is accepted by the DFA
+     * @param codePoints the code points to check
+     * @return true if the sequence is accepted, otherwise false
+     */
+    public boolean accepts(int[] codePoints) {
+        int state = start;
+        for (int i = 0; i < codePoints.length && state != CompiledDFA.DEAD; i++) {
+            state = step(state, codePoints[i]);
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Follows a single transition.
+     * @param state the current state id, or DEAD
+     * @param codePoint the input code point
+     * @return the next state id, or DEAD if there is no such transition
+     */
+    public int step(int state, int codePoint) {
+        if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        int next = delta[state * classCount + classOf(codePoint)];
+        return (next == CompiledDFA.DEAD) ? rangeTarget(state, codePoint) : next;
+    }
+
+    /**
+     * @return the start state id, or DEAD if the DFA had no start state
+     */
+    public int startState() {
+        return start;
+    }
+
+    /**
+     * @param state a state id
+     * @return true if the state is final; DEAD is never final
+     */
+    public boolean isFinal(int state) {
+        return state != CompiledDFA.DEAD && finals[state];
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return stateNames.length;
+    }
+
+    /**
+     * @return the number of symbol classes, including the all-DEAD class 0
+     */
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * @return the number of range transitions over all states
+     */
+    public int rangeCount() {
+        return rangeStart[rangeStart.length - 1];
+    }
+
+    /**
+     * @param state a state id
+     * @return the label the state had in the DFA
+     */
+    public String stateName(int state) {
+        return stateNames[state];
+    }
+}
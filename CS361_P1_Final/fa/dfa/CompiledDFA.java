@@ -0,0 +1,1009 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, table-driven form of a {@link DFA}, produced by {@link DFA#freeze()}.
+ *
+ * States are numbered densely from 0 in the order they were added to the DFA.
+ * Symbols that lead to the same state from every state are merged into one symbol class
+ * (see {@link SymbolClasses}), so the transition function is a single flat array of
+ * |Q| x |classes| entries indexed by {@code state * classCount + classId}.
+ * A missing transition is stored as {@link #DEAD}, and class 0 is an all-DEAD column
+ * that every char outside Sigma maps to.
+ *
+ * Matching does no hashing, boxing or allocation: each input character costs
+ * one two-level class lookup and one table read.
+ *
+ * Transitions into states from which no final state can be reached are stored as DEAD too,
+ * so a run stops at the first char after which it can no longer be accepted. Once a run enters
+ * an accept sink, a final state that every symbol keeps among accept sinks, the rest of the
+ * input is only checked for chars outside Sigma instead of being walked through the table.
+ *
+ * Instances are deeply immutable: every field is final and no array is written after
+ * construction. Any number of threads can share one, with no locking (see {@link DFAHolder}).
+ */
+public final class CompiledDFA {
+    /** Marks a missing transition; once the run reaches it the input is rejected */
+    public static final int DEAD = -1;
+
+    /** Number of chars read at a time by the streaming accepts methods */
+    static final int CHUNK_SIZE = 8192;
+    /** Largest slice of a file that is mapped at once */
+    static final long MAP_WINDOW = 1L << 30;
+    /** Default input length from which accepts(CharSequence) runs in parallel */
+    public static final int DEFAULT_PARALLEL_MIN_LENGTH = 1 << 20;
+    /** Default largest |Q| for which accepts(CharSequence) runs in parallel */
+    public static final int DEFAULT_PARALLEL_MAX_STATES = 256;
+    /** Smallest number of chars handed to one parallel task */
+    static final int MIN_PARALLEL_CHUNK = 1 << 14;
+
+    /** State labels, indexed by state id */
+    private final String[] stateNames;
+    /** Sigma in insertion order, indexed by symbol index */
+    private final char[] symbols;
+    /** The class id of each symbol index */
+    private final int[] symbolClass;
+    /** Maps any char to its class id */
+    private final SymbolClasses classes;
+    /** Number of columns in delta */
+    private final int classCount;
+    /** Flat transition table, row-major by state, one column per class */
+    private final int[] delta;
+    /** Final states, indexed by state id */
+    private final boolean[] finals;
+    /** Accept sinks, indexed by state id, or null if there are none */
+    private final boolean[] sinks;
+    /** Start state id, or DEAD if the DFA had no start state */
+    private final int start;
+    /** Inputs at least this long are matched in parallel, if |Q| is small enough */
+    private final int parallelMinLength;
+    /** Largest number of states for which parallel matching is used */
+    private final int parallelMaxStates;
+
+    /**
+     * Builds the compiled form from already-numbered parts whose symbols are already grouped into classes.
+     * The arrays are owned by the new instance and must not be modified afterwards; transitions into
+     * dead states are rewritten to DEAD, and classes whose columns that makes identical are merged.
+     *
+     * @param stateNames labels of the states, indexed by id
+     * @param symbols Sigma, indexed by symbol index
+     * @param symbolClass the class id of each symbol index, 0 for symbols that lead nowhere from any state
+     * @param classCount the number of classes, including class 0
+     * @param classDelta the flat class transition table, indexed by state * classCount + classId,
+     *                   with an all-DEAD column 0
+     * @param finals final flags, indexed by state id
+     * @param start the start state id, or DEAD
+     */
+    CompiledDFA(String[] stateNames, char[] symbols, int[] symbolClass, int classCount, int[] classDelta,
+            boolean[] finals, int start) {
+        final int n = stateNames.length;
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.finals = finals;
+        this.start = start;
+        Liveness liveness = new Liveness(classDelta, n, classCount);
+        int deadStates = liveness.pruneDead(finals);
+        boolean leadsNowhere = false;
+        for (int k : symbolClass) {
+            leadsNowhere |= k == 0;
+        }
+        // a symbol in class 0 rejects from every state, so no state can be an accept sink
+        this.sinks = leadsNowhere ? null : liveness.acceptSinks(finals);
+        if (deadStates > 0) {
+            // pruning can leave columns that only differed in dead targets identical
+            int[] merged = new int[classCount];
+            int mergedCount = SymbolClasses.group(classDelta, n, classCount, merged);
+            if (mergedCount < classCount) {
+                int[] representative = new int[mergedCount];
+                for (int k = classCount - 1; k >= 0; k--) {
+                    representative[merged[k]] = k;
+                }
+                int[] compact = new int[n * mergedCount];
+                for (int q = 0; q < n; q++) {
+                    for (int k = 0; k < mergedCount; k++) {
+                        compact[q * mergedCount + k] = classDelta[q * classCount + representative[k]];
+                    }
+                }
+                for (int j = 0; j < symbolClass.length; j++) {
+                    symbolClass[j] = merged[symbolClass[j]];
+                }
+                classDelta = compact;
+                classCount = mergedCount;
+            }
+        }
+        this.symbolClass = symbolClass;
+        this.classes = SymbolClasses.build(symbols, symbolClass, classCount);
+        this.classCount = classCount;
+        this.delta = classDelta;
+        this.parallelMinLength = DEFAULT_PARALLEL_MIN_LENGTH;
+        this.parallelMaxStates = DEFAULT_PARALLEL_MAX_STATES;
+    }
+
+    /**
+     * Copies a compiled DFA with new parallel thresholds, sharing all of its tables.
+     */
+    private CompiledDFA(CompiledDFA other, int parallelMinLength, int parallelMaxStates) {
+        this.stateNames = other.stateNames;
+        this.symbols = other.symbols;
+        this.symbolClass = other.symbolClass;
+        this.classes = other.classes;
+        this.classCount = other.classCount;
+        this.delta = other.delta;
+        this.finals = other.finals;
+        this.sinks = other.sinks;
+        this.start = other.start;
+        this.parallelMinLength = parallelMinLength;
+        this.parallelMaxStates = parallelMaxStates;
+    }
+
+    /**
+     * Copies a compiled DFA with its states renumbered, sharing the symbol tables.
+     * @param order the old state ids in their new order
+     */
+    private CompiledDFA(CompiledDFA other, int[] order) {
+        final int n = order.length;
+        final int width = other.classCount;
+        int[] newId = new int[n];
+        for (int i = 0; i < n; i++) {
+            newId[order[i]] = i;
+        }
+        this.stateNames = new String[n];
+        this.finals = new boolean[n];
+        this.sinks = (other.sinks == null) ? null : new boolean[n];
+        this.delta = new int[n * width];
+        for (int i = 0; i < n; i++) {
+            int q = order[i];
+            stateNames[i] = other.stateNames[q];
+            finals[i] = other.finals[q];
+            if (sinks != null) sinks[i] = other.sinks[q];
+            for (int k = 0; k < width; k++) {
+                int t = other.delta[q * width + k];
+                delta[i * width + k] = (t == DEAD) ? DEAD : newId[t];
+            }
+        }
+        this.start = (other.start == DEAD) ? DEAD : newId[other.start];
+        this.symbols = other.symbols;
+        this.symbolClass = other.symbolClass;
+        this.classes = other.classes;
+        this.classCount = other.classCount;
+        this.parallelMinLength = other.parallelMinLength;
+        this.parallelMaxStates = other.parallelMaxStates;
+    }
+
+    /**
+     * Returns a compiled DFA sharing this one's tables that switches to parallel matching
+     * for inputs of at least minLength chars when it has at most maxStates states.
+     * @param minLength the shortest input matched in parallel
+     * @param maxStates the largest |Q| for which parallel matching is used
+     * @return the reconfigured compiled DFA
+     */
+    public CompiledDFA withParallelThresholds(int minLength, int maxStates) {
+        if (minLength == parallelMinLength && maxStates == parallelMaxStates) return this;
+        return new CompiledDFA(this, minLength, maxStates);
+    }
+
+    /**
+     * Checks if a string is accepted by the DFA
+     * Long inputs on small DFAs are handed to {@link #acceptsParallel(CharSequence)},
+     * see {@link #withParallelThresholds(int, int)}.
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean accepts(CharSequence s) {
+        if (s.length() >= parallelMinLength && stateNames.length <= parallelMaxStates
+                && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return acceptsParallel(s);
+        }
+        return isFinal(run(start, s, 0, s.length()));
+    }
+
+    /**
+     * Checks if a string is accepted by the DFA, splitting it into chunks matched on the common fork/join pool
+     * The first chunk is run from the start state. Every other chunk is run speculatively from all states at once,
+     * giving a state to state mapping for that chunk; runs that reach the same state are merged, so the cost per
+     * char drops to the number of distinct states still alive. The mappings are then composed left to right.
+     * The CharSequence must not be modified while it is being matched.
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean acceptsParallel(CharSequence s) {
+        final int n = s.length();
+        int chunks = Math.min(n / MIN_PARALLEL_CHUNK, ForkJoinPool.getCommonPoolParallelism() * 4);
+        if (chunks < 2 || start == DEAD) {
+            return isFinal(run(start, s, 0, n));
+        }
+        final int chunkCount = chunks;
+        final int[][] maps = new int[chunkCount][];
+        final int[] first = new int[1];
+        IntStream.range(0, chunkCount).parallel().forEach(c -> {
+            int lo = (int) ((long) n * c / chunkCount);
+            int hi = (int) ((long) n * (c + 1) / chunkCount);
+            if (c == 0) {
+                first[0] = run(start, s, lo, hi - lo);
+            } else {
+                maps[c] = chunkMap(s, lo, hi);
+            }
+        });
+        int state = first[0];
+        for (int c = 1; c < chunkCount && state != DEAD; c++) {
+            state = maps[c][state];
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Checks a batch of strings against the DFA on the calling thread
+     * @param inputs the strings to check
+     * @return for each input, in iteration order, whether it is accepted
+     */
+    public boolean[] acceptsAll(Collection<? extends CharSequence> inputs) {
+        return acceptsAll(inputs, false);
+    }
+
+    /**
+     * Checks a batch of strings against the DFA
+     * The batch is walked like a trie: the indexes of the strings are sorted in place by a three-way radix
+     * quicksort, and the state reached after the prefix a group of strings shares is carried along with
+     * the group, so each distinct prefix is stepped through once. A group whose prefix already leads to
+     * DEAD is rejected without sorting it further. Nothing is allocated per string.
+     * This pays off when the strings share long prefixes, the more so the larger the table; for unrelated
+     * strings on a table that fits in cache, one accepts call per string is faster (see BatchBenchmark).
+     * @param inputs the strings to check
+     * @param parallel if true, large groups are walked as separate tasks on the common fork/join pool
+     * @return for each input, in iteration order, whether it is accepted
+     */
+    public boolean[] acceptsAll(Collection<? extends CharSequence> inputs, boolean parallel) {
+        final CharSequence[] items = inputs.toArray(new CharSequence[0]);
+        final boolean[] result = new boolean[items.length];
+        if (items.length == 0 || start == DEAD) return result;
+
+        final int[] order = new int[items.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        BatchWalk walk = new BatchWalk(items, order, result, 0, order.length, 0, start,
+                parallel && ForkJoinPool.getCommonPoolParallelism() > 1);
+        if (walk.parallel) {
+            ForkJoinPool.commonPool().invoke(walk);
+        } else {
+            walk.compute();
+        }
+        return result;
+    }
+
+    /**
+     * Walks order[lo, hi) of a batch, whose strings all share their first depth chars and reach state on them.
+     * Groups are kept on an explicit stack, so long shared prefixes cannot overflow the call stack.
+     */
+    private final class BatchWalk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** Groups smaller than this are run one string at a time */
+        private static final int SMALL_GROUP = 8;
+        /** Groups at least this large are forked off when walking in parallel */
+        private static final int FORK_GROUP = 1 << 12;
+
+        private final CharSequence[] items;
+        private final int[] order;
+        private final boolean[] result;
+        private final int lo;
+        private final int hi;
+        private final int depth;
+        private final int state;
+        final boolean parallel;
+
+        BatchWalk(CharSequence[] items, int[] order, boolean[] result, int lo, int hi, int depth, int state,
+                boolean parallel) {
+            this.items = items;
+            this.order = order;
+            this.result = result;
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+            this.state = state;
+            this.parallel = parallel;
+        }
+
+        // the char of a string at depth d, or -1 past its end
+        private int key(int item, int d) {
+            CharSequence s = items[item];
+            return (d < s.length()) ? s.charAt(d) : -1;
+        }
+
+        @Override
+        protected void compute() {
+            // each group is four ints: lo, hi, depth, state
+            int[] stack = new int[64];
+            int top = push(stack, 0, lo, hi, depth, state);
+            List<BatchWalk> forked = new ArrayList<>();
+            while (top > 0) {
+                int q = stack[--top];
+                int d = stack[--top];
+                int to = stack[--top];
+                int from = stack[--top];
+                if (q == DEAD) continue;
+                if (to - from < SMALL_GROUP) {
+                    for (int i = from; i < to; i++) {
+                        CharSequence s = items[order[i]];
+                        result[order[i]] = isFinal(run(q, s, d, s.length() - d));
+                    }
+                    continue;
+                }
+                if (parallel && to - from >= FORK_GROUP && (from != lo || to != hi)) {
+                    BatchWalk task = new BatchWalk(items, order, result, from, to, d, q, true);
+                    task.fork();
+                    forked.add(task);
+                    continue;
+                }
+                // step once through the chars every string of the group shares with the first one
+                CharSequence first = items[order[from]];
+                int common = first.length() - d;
+                for (int i = from + 1; i < to && common > 0; i++) {
+                    CharSequence s = items[order[i]];
+                    int limit = Math.min(common, s.length() - d);
+                    int k = 0;
+                    while (k < limit && s.charAt(d + k) == first.charAt(d + k)) k++;
+                    common = k;
+                }
+                if (common > 0) {
+                    q = run(q, first, d, common);
+                    d += common;
+                    if (q == DEAD) continue;
+                }
+                // three-way partition on the char at depth d: [from, lt) below the pivot, [lt, gt) equal, [gt, to) above
+                int pivot = median(key(order[from], d), key(order[(from + to) >>> 1], d), key(order[to - 1], d));
+                int lt = from;
+                int gt = to;
+                for (int i = from; i < gt; ) {
+                    int c = key(order[i], d);
+                    if (c < pivot) {
+                        swap(order, lt++, i++);
+                    } else if (c > pivot) {
+                        swap(order, i, --gt);
+                    } else {
+                        i++;
+                    }
+                }
+                if (stack.length < top + 12) stack = Arrays.copyOf(stack, stack.length * 2);
+                top = push(stack, top, from, lt, d, q);
+                top = push(stack, top, gt, to, d, q);
+                if (pivot < 0) {
+                    // these strings end here
+                    boolean accepted = isFinal(q);
+                    for (int i = lt; i < gt; i++) {
+                        result[order[i]] = accepted;
+                    }
+                } else {
+                    top = push(stack, top, lt, gt, d + 1, delta[q * classCount + classes.classOf((char) pivot)]);
+                }
+            }
+            for (BatchWalk task : forked) {
+                task.join();
+            }
+        }
+    }
+
+    private static int push(int[] stack, int top, int lo, int hi, int depth, int state) {
+        if (lo == hi) return top;
+        stack[top++] = lo;
+        stack[top++] = hi;
+        stack[top++] = depth;
+        stack[top++] = state;
+        return top;
+    }
+
+    private static int median(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    /**
+     * Runs every state over s[lo, hi) in lockstep.
+     * @return the state each state ends in, or DEAD
+     */
+    private int[] chunkMap(CharSequence s, int lo, int hi) {
+        final int n = stateNames.length;
+        // cur holds the distinct states still alive, group maps each starting state to its slot in cur
+        int[] cur = new int[n];
+        int[] group = new int[n];
+        for (int q = 0; q < n; q++) {
+            cur[q] = q;
+            group[q] = q;
+        }
+        int alive = n;
+        int[] stamp = new int[n];
+        int[] slotOf = new int[n];
+        int[] remap = new int[n];
+        for (int i = lo, step = 1; i < hi && alive > 0; i++, step++) {
+            int cls = classes.classOf(s.charAt(i));
+            int next = 0;
+            boolean merged = false;
+            for (int j = 0; j < alive; j++) {
+                int t = delta[cur[j] * classCount + cls];
+                if (t == DEAD) {
+                    remap[j] = -1;
+                    merged = true;
+                } else if (stamp[t] == step) {
+                    remap[j] = slotOf[t];
+                    merged = true;
+                } else {
+                    stamp[t] = step;
+                    slotOf[t] = next;
+                    remap[j] = next;
+                    cur[next++] = t;
+                }
+            }
+            if (merged) {
+                for (int q = 0; q < n; q++) {
+                    if (group[q] >= 0) group[q] = remap[group[q]];
+                }
+            }
+            alive = next;
+        }
+        int[] map = new int[n];
+        for (int q = 0; q < n; q++) {
+            map[q] = (group[q] < 0) ? DEAD : cur[group[q]];
+        }
+        return map;
+    }
+
+    /**
+     * Checks if the remaining characters of a buffer are accepted by the DFA
+     * Heap buffers are scanned straight from their backing array. The position is left unchanged.
+     * @param buf the characters between position and limit
+     * @return true if the input is accepted, otherwise false
+     */
+    public boolean accepts(CharBuffer buf) {
+        int state;
+        if (buf.hasArray()) {
+            state = run(start, buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        } else {
+            state = run(start, buf, 0, buf.remaining());
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Checks if everything a reader produces is accepted by the DFA
+     * The input is read in fixed-size chunks, and reading stops once the run is dead.
+     * @param in the input source
+     * @return true if the input is accepted, otherwise false
+     * @throws IOException if reading fails
+     */
+    public boolean accepts(Reader in) throws IOException {
+        int state = start;
+        char[] chunk = new char[CHUNK_SIZE];
+        int n;
+        while (state != DEAD && (n = in.read(chunk, 0, chunk.length)) != -1) {
+            state = run(state, chunk, 0, n);
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Checks if a decoded byte stream is accepted by the DFA
+     * @param in the encoded input
+     * @param charset the encoding of the input
+     * @return true if the input is accepted, otherwise false
+     * @throws IOException if reading fails or the input is malformed for the charset
+     */
+    public boolean accepts(InputStream in, Charset charset) throws IOException {
+        return accepts(new InputStreamReader(in, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)));
+    }
+
+    /**
+     * Checks if the contents of a file are accepted by the DFA
+     * The file is memory-mapped in windows of up to 1GB and scanned in place, so it is never copied
+     * onto the heap. For UTF-8, US-ASCII and ISO-8859-1 the ASCII bytes drive the transition loop
+     * directly and only the other bytes go through the charset decoder.
+     * Scanning stops as soon as the run is dead.
+     * @param file the file to check
+     * @param charset the encoding of the file
+     * @return true if the decoded contents are accepted, otherwise false
+     * @throws IOException if the file cannot be read or is malformed for the charset
+     */
+    public boolean acceptsFile(Path file, Charset charset) throws IOException {
+        boolean latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        boolean ascii = latin1 || charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            int state = start;
+            while (state != DEAD && offset < size) {
+                long length = Math.min(MAP_WINDOW, size - offset);
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                boolean last = offset + length == size;
+                state = scan(state, window, ascii, latin1, decoder, chars, last);
+                // a multi-byte sequence cut by the window end is left unread and mapped again with the next window
+                offset += window.position();
+            }
+            if (state != DEAD) {
+                chars.clear();
+                CoderResult result = decoder.decode(ByteBuffer.allocate(0), chars, true);
+                if (!result.isError()) result = decoder.flush(chars);
+                if (result.isError()) result.throwException();
+                chars.flip();
+                state = run(state, chars.array(), chars.arrayOffset(), chars.remaining());
+            }
+            return isFinal(state);
+        }
+    }
+
+    /**
+     * Runs the DFA over one mapped window of encoded bytes, advancing the window's position.
+     * Stops early when the run dies or when only an incomplete multi-byte sequence is left.
+     */
+    private int scan(int state, ByteBuffer bytes, boolean ascii, boolean latin1, CharsetDecoder decoder,
+            CharBuffer chars, boolean endOfInput) throws CharacterCodingException {
+        final int[] delta = this.delta;
+        final SymbolClasses classes = this.classes;
+        final int width = classCount;
+        while (state != DEAD && bytes.hasRemaining()) {
+            if (ascii) {
+                int i = bytes.position();
+                int end = bytes.limit();
+                while (i < end) {
+                    byte b = bytes.get(i);
+                    if (b < 0 && !latin1) break;
+                    i++;
+                    state = delta[state * width + classes.classOf((char) (b & 0xFF))];
+                    if (state == DEAD) break;
+                }
+                bytes.position(i);
+                if (state == DEAD || i == end) break;
+            }
+            chars.clear();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) result.throwException();
+            chars.flip();
+            state = run(state, chars.array(), chars.arrayOffset(), chars.remaining());
+            if (result.isUnderflow() && chars.remaining() == 0) break;
+        }
+        return state;
+    }
+
+    /**
+     * Runs the DFA over part of a char array.
+     * @param state the state to start from, or DEAD
+     * @param input the input chars
+     * @param off index of the first char
+     * @param len number of chars to read
+     * @return the state reached, or DEAD as soon as the run dies
+     */
+    public int run(int state, char[] input, int off, int len) {
+        if (state == DEAD) return DEAD;
+        final int[] delta = this.delta;
+        final SymbolClasses classes = this.classes;
+        final int width = classCount;
+        final boolean[] sinks = this.sinks;
+        if (sinks == null) {
+            for (int i = off, end = off + len; i < end; i++) {
+                state = delta[state * width + classes.classOf(input[i])];
+                if (state == DEAD) return DEAD;
+            }
+            return state;
+        }
+        for (int i = off, end = off + len; i < end; i++) {
+            if (sinks[state]) {
+                // every further Sigma char keeps the run accepted, so only look for a char outside Sigma
+                for (; i < end; i++) {
+                    if (classes.classOf(input[i]) == 0) return DEAD;
+                }
+                return state;
+            }
+            state = delta[state * width + classes.classOf(input[i])];
+            if (state == DEAD) return DEAD;
+        }
+        return state;
+    }
+
+    /**
+     * Runs the DFA over part of a character sequence.
+     * @param state the state to start from, or DEAD
+     * @param input the input characters
+     * @param off index of the first char
+     * @param len number of chars to read
+     * @return the state reached, or DEAD as soon as the run dies
+     */
+    public int run(int state, CharSequence input, int off, int len) {
+        if (state == DEAD) return DEAD;
+        final int[] delta = this.delta;
+        final SymbolClasses classes = this.classes;
+        final int width = classCount;
+        final boolean[] sinks = this.sinks;
+        if (sinks == null) {
+            for (int i = off, end = off + len; i < end; i++) {
+                state = delta[state * width + classes.classOf(input.charAt(i))];
+                if (state == DEAD) return DEAD;
+            }
+            return state;
+        }
+        for (int i = off, end = off + len; i < end; i++) {
+            if (sinks[state]) {
+                for (; i < end; i++) {
+                    if (classes.classOf(input.charAt(i)) == 0) return DEAD;
+                }
+                return state;
+            }
+            state = delta[state * width + classes.classOf(input.charAt(i))];
+            if (state == DEAD) return DEAD;
+        }
+        return state;
+    }
+
+    /**
+     * Renumbers the states in breadth-first order from the start state, following symbol classes in order.
+     * States near the start, which most runs go through, end up in the first rows of the table, and the
+     * successors of a state in rows close to each other. States that cannot be reached come last.
+     * The result accepts exactly the same strings and keeps the state names, but its state ids differ.
+     * @return the renumbered compiled DFA
+     */
+    public CompiledDFA relayoutBreadthFirst() {
+        return new CompiledDFA(this, searchOrder(false));
+    }
+
+    /**
+     * Renumbers the states in depth-first preorder from the start state, following symbol classes in order,
+     * so each state's row is followed by the row of its first unvisited successor. Long chains of states,
+     * such as counters or keyword matchers, end up in consecutive rows. States that cannot be reached come last.
+     * The result accepts exactly the same strings and keeps the state names, but its state ids differ.
+     * @return the renumbered compiled DFA
+     */
+    public CompiledDFA relayoutDepthFirst() {
+        return new CompiledDFA(this, searchOrder(true));
+    }
+
+    /**
+     * Renumbers the states by the traffic a profiler saw on this DFA, so that hot states and their usual
+     * successors share cache lines. Starting from the most visited state not yet placed, each state is
+     * followed by its most taken transition to a state not yet placed, until the chain reaches a placed or
+     * unvisited state; then the next chain starts. States that were never visited come last, breadth first.
+     * The result accepts exactly the same strings and keeps the state names, but its state ids differ.
+     * @param profile counts taken by a DFAProfiler on this DFA, or on one with the same state ids
+     * @return the renumbered compiled DFA
+     * @throws IllegalArgumentException if the profile has a different number of states or symbol classes
+     */
+    public CompiledDFA relayout(DFAProfiler.Snapshot profile) {
+        final int n = stateNames.length;
+        final int width = classCount;
+        long[] visits = profile.visits();
+        long[] hits = profile.hitsByClass();
+        if (visits.length != n || profile.classCount() != width) {
+            throw new IllegalArgumentException("profile is for a DFA with " + visits.length + " states and "
+                    + profile.classCount() + " symbol classes, not " + n + " and " + width);
+        }
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int count = 0;
+        int[] hottest = IntStream.range(0, n).boxed()
+                .sorted((a, b) -> Long.compare(visits[b], visits[a]))
+                .mapToInt(Integer::intValue).toArray();
+        for (int q : hottest) {
+            if (visits[q] == 0) break;
+            for (int p = q; p != DEAD && !placed[p]; ) {
+                placed[p] = true;
+                order[count++] = p;
+                int next = DEAD;
+                long best = 0;
+                for (int c = 1; c < width; c++) {
+                    int t = delta[p * width + c];
+                    if (t != DEAD && !placed[t] && hits[p * width + c] > best) {
+                        best = hits[p * width + c];
+                        next = t;
+                    }
+                }
+                p = next;
+            }
+        }
+        for (int q : searchOrder(false)) {
+            if (!placed[q]) order[count++] = q;
+        }
+        return new CompiledDFA(this, order);
+    }
+
+    // the state ids in search order from the start state, then the unreachable ones in id order
+    private int[] searchOrder(boolean depthFirst) {
+        final int n = stateNames.length;
+        final int width = classCount;
+        int[] order = new int[n];
+        boolean[] placed = new boolean[n];
+        int count = 0;
+        if (start != DEAD) {
+            placed[start] = true;
+            order[count++] = start;
+            if (depthFirst) {
+                // the stack holds the path from the start; nextClass is the next column to try for each state on it
+                int[] stack = new int[n];
+                int[] nextClass = new int[n];
+                int top = 0;
+                stack[top++] = start;
+                nextClass[start] = 1;
+                while (top > 0) {
+                    int q = stack[top - 1];
+                    if (nextClass[q] == width) {
+                        top--;
+                        continue;
+                    }
+                    int t = delta[q * width + nextClass[q]++];
+                    if (t != DEAD && !placed[t]) {
+                        placed[t] = true;
+                        order[count++] = t;
+                        stack[top++] = t;
+                        nextClass[t] = 1;
+                    }
+                }
+            } else {
+                // order doubles as the queue
+                for (int head = 0; head < count; head++) {
+                    int q = order[head];
+                    for (int c = 1; c < width; c++) {
+                        int t = delta[q * width + c];
+                        if (t != DEAD && !placed[t]) {
+                            placed[t] = true;
+                            order[count++] = t;
+                        }
+                    }
+                }
+            }
+        }
+        for (int q = 0; q < n; q++) {
+            if (!placed[q]) order[count++] = q;
+        }
+        return order;
+    }
+
+    /**
+     * Writes the DFA in the binary format read by {@link MappedDFA}.
+     * The layout, all ints big-endian, is: a header of magic, version, |Q|, |Sigma|, class count and start state;
+     * Sigma as 2-byte chars padded to 4 bytes; the class of each symbol; the |Q| x classes transition table;
+     * the final states as a bitmap of 32-bit words; and the state names as |Q| + 1 offsets into a UTF-8 blob.
+     * @param out the stream to write to; it is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final int n = stateNames.length;
+        byte[][] names = new byte[n][];
+        for (int q = 0; q < n; q++) {
+            names[q] = stateNames[q].getBytes(StandardCharsets.UTF_8);
+        }
+        final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        put(out, buf, MappedDFA.MAGIC, MappedDFA.VERSION, n, symbols.length, classCount, start);
+        for (char symbol : symbols) {
+            ensure(out, buf, 2).putChar(symbol);
+        }
+        if (symbols.length % 2 != 0) ensure(out, buf, 2).putChar((char) 0);
+        put(out, buf, symbolClass);
+        put(out, buf, delta);
+        int[] words = new int[(n + 31) >>> 5];
+        for (int q = 0; q < n; q++) {
+            if (finals[q]) words[q >>> 5] |= 1 << (q & 31);
+        }
+        put(out, buf, words);
+        int offset = 0;
+        put(out, buf, offset);
+        for (byte[] name : names) {
+            offset += name.length;
+            put(out, buf, offset);
+        }
+        for (byte[] name : names) {
+            ensure(out, buf, name.length);
+            if (name.length > buf.capacity()) {
+                out.write(name);
+            } else {
+                buf.put(name);
+            }
+        }
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    /**
+     * Writes the DFA in the binary format read by {@link MappedDFA}, replacing the file if it exists.
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void writeTo(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writeTo(out);
+        }
+    }
+
+    // flushes the buffer to the stream if fewer than count bytes are free
+    private static ByteBuffer ensure(OutputStream out, ByteBuffer buf, int count) throws IOException {
+        if (buf.remaining() < count) {
+            out.write(buf.array(), 0, buf.position());
+            buf.clear();
+        }
+        return buf;
+    }
+
+    private static void put(OutputStream out, ByteBuffer buf, int... values) throws IOException {
+        for (int value : values) {
+            ensure(out, buf, 4).putInt(value);
+        }
+    }
+
+    /**
+     * Copies the transition table into off-heap memory, using 1, 2 or 4 bytes per transition
+     * depending on the number of states. This compiled DFA is not changed and can be dropped afterwards.
+     * @return the off-heap copy, which must be closed to free its memory
+     */
+    public OffHeapDFA toOffHeap() {
+        return new OffHeapDFA(this);
+    }
+
+    // shared with OffHeapDFA, which never writes to them
+    String[] stateNames() {
+        return stateNames;
+    }
+
+    SymbolClasses symbolClasses() {
+        return classes;
+    }
+
+    // the flat transition table, for DFASet's scan loop
+    int[] delta() {
+        return delta;
+    }
+
+    /**
+     * @return a new resumable matcher positioned at the start state
+     */
+    public DFAMatcher newMatcher() {
+        return new DFAMatcher(this);
+    }
+
+    /**
+     * @param text the text to search
+     * @param kind how to pick among overlapping matches
+     * @return a new searcher for the spans of the text this DFA accepts
+     */
+    public DFASearcher searcher(CharSequence text, MatchKind kind) {
+        return new DFASearcher(this, text, kind);
+    }
+
+    /**
+     * Follows a single transition.
+     * @param state the current state id, or DEAD
+     * @param symbol the input symbol
+     * @return the next state id, or DEAD if there is no such transition
+     */
+    public int step(int state, char symbol) {
+        if (state == DEAD) return DEAD;
+        return delta[state * classCount + classes.classOf(symbol)];
+    }
+
+    /**
+     * Looks up the symbol class of a char.
+     * @param symbol the char to look up
+     * @return its class id; 0 for chars that reject from every state, including all chars outside Sigma
+     */
+    public int classOf(char symbol) {
+        return classes.classOf(symbol);
+    }
+
+    /**
+     * Follows a single transition on a symbol class.
+     * @param state the current state id, or DEAD
+     * @param symbolClass a class id from {@link #classOf(char)}
+     * @return the next state id, or DEAD if there is no such transition
+     */
+    public int transition(int state, int symbolClass) {
+        if (state == DEAD) return DEAD;
+        return delta[state * classCount + symbolClass];
+    }
+
+    /**
+     * @return the start state id, or DEAD if the DFA had no start state
+     */
+    public int startState() {
+        return start;
+    }
+
+    /**
+     * @param state a state id
+     * @return true if the state is final; DEAD is never final
+     */
+    public boolean isFinal(int state) {
+        return state != DEAD && finals[state];
+    }
+
+    /**
+     * @param state a state id
+     * @return true if every continuation made of Sigma chars is accepted from the state; DEAD is never a sink
+     */
+    public boolean isAcceptSink(int state) {
+        return state != DEAD && sinks != null && sinks[state];
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return stateNames.length;
+    }
+
+    /**
+     * @return the size of Sigma
+     */
+    public int symbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * @return the number of symbol classes, including the rejecting class 0
+     */
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * @param index a symbol index
+     * @return the symbol with that index
+     */
+    public char symbolAt(int index) {
+        return symbols[index];
+    }
+
+    /**
+     * @param index a symbol index
+     * @return the class id of the symbol with that index
+     */
+    public int symbolClassAt(int index) {
+        return symbolClass[index];
+    }
+
+    /**
+     * @param state a state id
+     * @return the label the state had in the DFA
+     */
+    public String stateName(int state) {
+        return stateNames[state];
+    }
+
+    /**
+     * @return a copy of the final states as a bit set indexed by state id
+     */
+    public BitSet finalStates() {
+        BitSet bits = new BitSet(finals.length);
+        for (int i = 0; i < finals.length; i++) {
+            if (finals[i]) bits.set(i);
+        }
+        return bits;
+    }
+}
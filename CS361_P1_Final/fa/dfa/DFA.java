@@ -1,10 +1,26 @@
 package fa.dfa;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import fa.State;
 
@@ -12,7 +28,8 @@ import fa.State;
 /*
  * The logic for a DFA within this project.
  * By extending the DFAInterface, this class defines the methods needed for a DFA's states, alphabet, transitions, and start/final points.
- * Out of the concrete classes given, we chose to use a HashSet and HashMap for the structure of this class.
+ * States and symbols are numbered as they are added and transitions are kept in an int table (see TransitionTable),
+ * with a HashMap from each symbol to its column in the table.
  * @Author Parker Smith, Sabastian Leeper
  */
 
@@ -20,19 +37,36 @@ import fa.State;
  * DFA class implements DFAInterface and FAInterface.
  */
 public class DFA implements DFAInterface {
-    // Major change here! Changed from HashSet to LinkedHashSet to keep order. toString now works!
-    private Set<String> states;
-    private Set<Character> alphabet;
-    private Map<String, DFAState> stateMap;
-    private String startState;
-    private Set<String> finalStates;
+    // States, alphabet and transitions; may be shared with DFAs made by swap, so copy it before changing it
+    private TransitionTable table;
+    // Column of each symbol in the table; this is the only part a swapped DFA does not share
+    private Map<Character, Integer> columns;
+    // State objects handed out by getState, created on first request
+    private DFAState[] views;
+    // Compiled form used for matching, thrown away whenever the DFA changes
+    private CompiledDFA compiled;
+    // Input length and state count limits for parallel matching, see setParallelThresholds
+    private int parallelMinLength = CompiledDFA.DEFAULT_PARALLEL_MIN_LENGTH;
+    private int parallelMaxStates = CompiledDFA.DEFAULT_PARALLEL_MAX_STATES;
+    // Code point form used by acceptsCodePoints, thrown away whenever the DFA changes
+    private CodePointDFA codePoints;
+    // Profiler the accepts methods go through while profiling is on, otherwise null
+    private DFAProfiler profiler;
 
     public DFA() {
-        states = new LinkedHashSet<>();
-        alphabet = new LinkedHashSet<>();
-        stateMap = new HashMap<>();
-        finalStates = new LinkedHashSet<>();
-        startState = null;
+        table = new TransitionTable();
+        columns = new HashMap<>();
+    }
+
+    // Returns the table for changing, after taking a private copy if it is shared
+    private TransitionTable mutableTable() {
+        if (table.shared) {
+            table = table.copy();
+        }
+        compiled = null;
+        codePoints = null;
+        profiler = null;
+        return table;
     }
 
       /*
@@ -42,10 +76,50 @@ public class DFA implements DFAInterface {
      */  
     @Override
     public boolean addState(String name) {
-        if (name == null || states.contains(name)) return false;
-        states.add(name);
-        stateMap.put(name, new DFAState(name));
-        return true;
+        return newState(name) >= 0;
+    }
+
+    /*
+     * Adds a state and returns its id, for building a DFA without looking names up again
+     * Ids are dense and given out in the order states are added, starting at 0.
+     * The name is kept once, in a side table that maps ids and names both ways.
+     * @param name of the added state
+     * @return the id of the new state, or -1 if the name is null or already taken
+     */
+    public int newState(String name) {
+        if (name == null || table.ids.containsKey(name)) return -1;
+        return mutableTable().addState(name);
+    }
+
+    /*
+     * Looks up the id of a state
+     * @param name the state name
+     * @return the id, or -1 if there is no such state
+     */
+    public int stateId(String name) {
+        Integer id = table.ids.get(name);
+        return (id == null) ? -1 : id;
+    }
+
+    /*
+     * Looks up the name of a state
+     * @param id the state id
+     * @return the name the state was added with
+     */
+    public String stateName(int id) {
+        if (!isState(id)) throw new IndexOutOfBoundsException("no state with id " + id);
+        return table.names[id];
+    }
+
+    /*
+     * @return the number of states
+     */
+    public int stateCount() {
+        return table.stateCount;
+    }
+
+    private boolean isState(int id) {
+        return id >= 0 && id < table.stateCount;
     }
 
      /*
@@ -54,7 +128,9 @@ public class DFA implements DFAInterface {
      */  
     @Override
     public void addSigma(char symbol) {
-        alphabet.add(symbol);
+        if (!columns.containsKey(symbol)) {
+            columns.put(symbol, mutableTable().addSymbol(symbol));
+        }
     }
 
     /*
@@ -64,11 +140,18 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean setStart(String name) {
-        if (states.contains(name)) {
-            startState = name;
-            return true;
-        }
-        return false;
+        return setStart(stateId(name));
+    }
+
+    /*
+     * Sets a state as the start state by id
+     * @param id of the state to be set as the start
+     * @return true if the state is set as start, otherwise false
+     */
+    public boolean setStart(int id) {
+        if (!isState(id)) return false;
+        mutableTable().start = id;
+        return true;
     }
 
     /*
@@ -78,11 +161,18 @@ public class DFA implements DFAInterface {
      */
     @Override
     public boolean setFinal(String name) {
-        if (states.contains(name)) {
-            finalStates.add(name);
-            return true;
-        }
-        return false;
+        return setFinal(stateId(name));
+    }
+
+    /*
+     * Sets a state as final by id
+     * @param id of the state to be set as final
+     * @return true if the state is set as final, otherwise false
+     */
+    public boolean setFinal(int id) {
+        if (!isState(id)) return false;
+        mutableTable().setFinal(id);
+        return true;
     }
 
     /* 
@@ -95,115 +185,753 @@ public class DFA implements DFAInterface {
 
     @Override
     public boolean addTransition(String fromState, String toState, char onSymb) {
-        if (!states.contains(fromState) || !states.contains(toState) || !alphabet.contains(onSymb)) {
+        return addTransition(stateId(fromState), stateId(toState), onSymb);
+    }
+
+    /*
+     * Adds a transition between states given by id
+     * @param from the id of the state to transition from
+     * @param to the id of the state to transition to
+     * @param onSymb the symbol on which the transition occurs
+     * @return true if the transition was added, otherwise false
+     */
+    public boolean addTransition(int from, int to, char onSymb) {
+        Integer column = columns.get(onSymb);
+        if (!isState(from) || !isState(to) || column == null) {
+            return false;
+        }
+        mutableTable().setTarget(from, column, to);
+        return true;
+    }
+
+    /*
+     * Adds a transition on every code point from lo to hi, without adding them to Sigma
+     * Range transitions are read by acceptsCodePoints and freezeCodePoints only, where a surrogate pair
+     * is one code point and a state's char transitions take precedence over its ranges; accepts, toString,
+     * swap and the other matching methods work on the symbols of Sigma alone. minimize, equivalentTo,
+     * distinguishingString, isEmpty, isUniversal, the product operations, writeTo and writeText would lose
+     * the ranges, so they throw UnsupportedOperationException on a DFA that has any. Each state keeps its
+     * ranges in a sorted array, so a wide range costs as little as a single code point.
+     * @param fromState the state the transition starts at
+     * @param toState the state it ends at
+     * @param lo the first code point of the range
+     * @param hi the last code point of the range
+     * @return true if the transition is added, false if a state does not exist, the range is not a valid
+     *         range of code points, or it overlaps another range of fromState
+     */
+    public boolean addTransition(String fromState, String toState, int lo, int hi) {
+        return addTransition(stateId(fromState), stateId(toState), lo, hi);
+    }
+
+    /*
+     * Adds a transition on every code point from lo to hi, see addTransition(String, String, int, int)
+     * @param from the id of the state to transition from
+     * @param to the id of the state to transition to
+     * @param lo the first code point of the range
+     * @param hi the last code point of the range
+     * @return true if the transition is added, otherwise false
+     */
+    public boolean addTransition(int from, int to, int lo, int hi) {
+        if (!isState(from) || !isState(to) || lo < 0 || lo > hi || hi > Character.MAX_CODE_POINT
+                || table.rangeOverlaps(from, lo, hi)) {
             return false;
         }
-        stateMap.get(fromState).addTransition(onSymb, stateMap.get(toState));
+        mutableTable().addRange(from, lo, hi, to);
+        return true;
+    }
+
+    /*
+     * Adds many transitions at once, the i-th going from from[i] to to[i] on onSymb[i]
+     * Everything is checked before anything is added, so either all transitions are added or none.
+     * Runs of the same symbol only look its column up once.
+     * @param from the ids of the states to transition from
+     * @param to the ids of the states to transition to
+     * @param onSymb the symbols on which the transitions occur
+     * @return true if the transitions were added, false if the arrays differ in length or any entry is invalid
+     */
+    public boolean addTransitions(int[] from, int[] to, char[] onSymb) {
+        if (from.length != to.length || from.length != onSymb.length) return false;
+        int[] column = new int[onSymb.length];
+        int last = -1;
+        for (int i = 0; i < onSymb.length; i++) {
+            if (i == 0 || onSymb[i] != onSymb[i - 1]) {
+                Integer c = columns.get(onSymb[i]);
+                if (c == null) return false;
+                last = c;
+            }
+            if (!isState(from[i]) || !isState(to[i])) return false;
+            column[i] = last;
+        }
+        TransitionTable t = mutableTable();
+        for (int i = 0; i < from.length; i++) {
+            t.setTarget(from[i], column[i], to[i]);
+        }
         return true;
     }
 
      /* 
      * Swaps two transition symbols in the DFA
+     * The new DFA shares this DFA's transition table and only gets its own symbol-to-column map,
+     * so this takes time proportional to the alphabet. Whichever DFA is changed first copies the table.
+     * The new DFA has its own states, so changes to either DFA are never seen by the other.
      * @param symb1 the first symbol to swap
      * @param symb2 the second symbol to swap
      * @return a new DFA with the swapped symbols
      */
     @Override
     public DFA swap(char symb1, char symb2) {
-        if (!alphabet.contains(symb1) || !alphabet.contains(symb2)) {
+        Integer column1 = columns.get(symb1);
+        Integer column2 = columns.get(symb2);
+        if (column1 == null || column2 == null) {
             return null;
         }
         DFA newDFA = new DFA();
-        newDFA.states.addAll(this.states);
-        newDFA.alphabet.addAll(this.alphabet);
-        newDFA.startState = this.startState;
-        newDFA.finalStates.addAll(this.finalStates);
-
-        for (String state : this.states) {
-            newDFA.stateMap.put(state, new DFAState(state));
-            for (char symbol : this.stateMap.get(state).getTransitions().keySet()) {
-                char newSymbol = (symbol == symb1) ? symb2 : (symbol == symb2) ? symb1 : symbol;
-                newDFA.stateMap.get(state).addTransition(newSymbol, this.stateMap.get(state).getTransitions().get(symbol));
-            }
-        }
+        table.shared = true;
+        newDFA.table = this.table;
+        newDFA.columns = new HashMap<>(this.columns);
+        newDFA.columns.put(symb1, column2);
+        newDFA.columns.put(symb2, column1);
+        newDFA.parallelMinLength = this.parallelMinLength;
+        newDFA.parallelMaxStates = this.parallelMaxStates;
         return newDFA;
     }
 
      /*
      * Checks if a string is accepted by the DFA
+     * Matching runs on the compiled table, which is rebuilt on the first call after the DFA changes.
      * @param s the string to check
      * @return true if the string is accepted, otherwise false
      */  
     @Override
     public boolean accepts(String s) {
-        if (startState == null) return false;
-        String currentState = startState;
+        DFAProfiler p = profiler;
+        if (p != null) return p.accepts(s);
+        return freeze().accepts(s);
+    }
 
-        for (char symbol : s.toCharArray()) {
-            if (!stateMap.get(currentState).getTransitions().containsKey(symbol)) {
-                return false;
-            }
-            currentState = stateMap.get(currentState).getTransitions().get(symbol).getName();
+    /*
+     * Checks if a character sequence is accepted by the DFA, without copying it
+     * @param s the characters to check
+     * @return true if the input is accepted, otherwise false
+     */
+    @Override
+    public boolean accepts(CharSequence s) {
+        DFAProfiler p = profiler;
+        if (p != null) return p.accepts(s);
+        return freeze().accepts(s);
+    }
+
+    /*
+     * Checks if the remaining characters of a buffer are accepted by the DFA
+     * @param buf the characters to check; its position is left unchanged
+     * @return true if the input is accepted, otherwise false
+     */
+    @Override
+    public boolean accepts(CharBuffer buf) {
+        DFAProfiler p = profiler;
+        if (p != null) return p.accepts(buf);
+        return freeze().accepts(buf);
+    }
+
+    /*
+     * Checks if everything a reader produces is accepted by the DFA, reading it in fixed-size chunks
+     * @param in the input source; reading stops as soon as the run is dead
+     * @return true if the input is accepted, otherwise false
+     */
+    @Override
+    public boolean accepts(Reader in) throws IOException {
+        DFAProfiler p = profiler;
+        if (p != null) return p.accepts(in);
+        return freeze().accepts(in);
+    }
+
+    /*
+     * Checks if a byte stream in the given charset is accepted by the DFA, reading it in fixed-size chunks
+     * @param in the encoded input; reading stops as soon as the run is dead
+     * @param charset the encoding of the input
+     * @return true if the decoded input is accepted, otherwise false
+     */
+    @Override
+    public boolean accepts(InputStream in, Charset charset) throws IOException {
+        DFAProfiler p = profiler;
+        if (p != null) return p.accepts(in, charset);
+        return freeze().accepts(in, charset);
+    }
+
+    /*
+     * Checks if a string is accepted when read as Unicode code points, following code point range transitions
+     * A surrogate pair is read as one code point and an unpaired surrogate as a code point of its own.
+     * @param s the string to check
+     * @return true if the code points of the string are accepted, otherwise false
+     */
+    public boolean acceptsCodePoints(CharSequence s) {
+        return freezeCodePoints().accepts(s);
+    }
+
+    /*
+     * Freezes the DFA into an immutable symbol class table plus per-state ranges, see CodePointDFA
+     * The same instance is returned until the DFA is changed through one of its methods.
+     * Unlike freeze, states that cannot reach a final state on the symbols of Sigma are kept, since
+     * their ranges may still lead to one.
+     * @return the code point form of the DFA
+     */
+    public CodePointDFA freezeCodePoints() {
+        if (codePoints == null) {
+            char[] symbols = Arrays.copyOf(table.symbols, table.symbolCount);
+            int[] columnClass = new int[symbols.length];
+            int classCount = SymbolClasses.refine(table, columnClass);
+            SymbolClasses classes = SymbolClasses.build(symbols, symbolClasses(columnClass), classCount);
+            codePoints = new CodePointDFA(table, classes, classCount, table.classTable(columnClass, classCount));
+        }
+        return codePoints;
+    }
+
+    /*
+     * Checks a batch of strings, walking prefixes they share only once
+     * @param inputs the strings to check
+     * @return for each input, in iteration order, whether it is accepted
+     */
+    public boolean[] acceptsAll(Collection<? extends CharSequence> inputs) {
+        return freeze().acceptsAll(inputs, false);
+    }
+
+    /*
+     * Checks a batch of strings, walking prefixes they share only once
+     * @param inputs the strings to check
+     * @param parallel whether to spread the batch over the common fork/join pool
+     * @return for each input, in iteration order, whether it is accepted
+     */
+    public boolean[] acceptsAll(Collection<? extends CharSequence> inputs, boolean parallel) {
+        return freeze().acceptsAll(inputs, parallel);
+    }
+
+    /*
+     * Checks if this DFA accepts exactly the same strings as another, using Hopcroft-Karp union-find
+     * @param other the DFA to compare with
+     * @return true if both recognize the same language
+     */
+    public boolean equivalentTo(DFA other) {
+        return Equivalence.distinguish(freezeWithoutRanges("equivalentTo"), other.freezeWithoutRanges("equivalentTo")) == null;
+    }
+
+    /*
+     * Finds a shortest string that exactly one of this DFA and another accepts
+     * @param other the DFA to compare with
+     * @return a distinguishing string, or null if the DFAs are equivalent
+     */
+    public String distinguishingString(DFA other) {
+        return Equivalence.distinguish(freezeWithoutRanges("distinguishingString"),
+                other.freezeWithoutRanges("distinguishingString"));
+    }
+
+    /*
+     * Checks if the DFA accepts no string at all
+     * @return true if no final state is reachable from the start state
+     */
+    public boolean isEmpty() {
+        return Equivalence.isEmpty(freezeWithoutRanges("isEmpty"));
+    }
+
+    /*
+     * Checks if the DFA accepts every string over its alphabet, including the empty string
+     * @return true if every reachable state is final and has a transition on every symbol
+     */
+    public boolean isUniversal() {
+        return Equivalence.isUniversal(freezeWithoutRanges("isUniversal"));
+    }
+
+    /*
+     * Combines this DFA with another into a lazy product accepting strings accepted by both
+     * Product states are only built as input reaches them; see ProductDFA.materialize for a plain DFA.
+     * @param other the DFA to intersect with
+     * @return the lazy product
+     */
+    public ProductDFA intersect(DFA other) {
+        return ProductDFA.of(freezeWithoutRanges("intersect")).intersect(other);
+    }
+
+    /*
+     * Combines this DFA with another into a lazy product accepting strings accepted by either
+     * @param other the DFA to unite with
+     * @return the lazy product
+     */
+    public ProductDFA union(DFA other) {
+        return ProductDFA.of(freezeWithoutRanges("union")).union(other);
+    }
+
+    /*
+     * Combines this DFA with another into a lazy product accepting strings accepted by this DFA but not the other
+     * @param other the DFA whose strings are removed
+     * @return the lazy product
+     */
+    public ProductDFA difference(DFA other) {
+        return ProductDFA.of(freezeWithoutRanges("difference")).difference(other);
+    }
+
+    /*
+     * Combines this DFA with another into a lazy product accepting strings accepted by exactly one of them
+     * @param other the DFA to compare with
+     * @return the lazy product
+     */
+    public ProductDFA symmetricDifference(DFA other) {
+        return ProductDFA.of(freezeWithoutRanges("symmetricDifference")).symmetricDifference(other);
+    }
+
+    /*
+     * Checks if the contents of a UTF-8 file are accepted by the DFA
+     * The file is memory-mapped and scanned in place instead of being read into a String.
+     * @param file the file to check
+     * @return true if the contents are accepted, otherwise false
+     */
+    public boolean acceptsFile(Path file) throws IOException {
+        return freeze().acceptsFile(file, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Checks if the contents of a file in the given charset are accepted by the DFA
+     * @param file the file to check
+     * @param charset the encoding of the file
+     * @return true if the decoded contents are accepted, otherwise false
+     */
+    public boolean acceptsFile(Path file, Charset charset) throws IOException {
+        return freeze().acceptsFile(file, charset);
+    }
+
+    /*
+     * Freezes the DFA into an immutable table-driven form
+     * States and symbols are numbered in the order they were added, so the compiled form
+     * accepts exactly the same strings as this DFA. Later changes to this DFA are not seen by it.
+     * The same instance is returned until the DFA is changed through one of its methods.
+     * @return the compiled DFA
+     */
+    public CompiledDFA freeze() {
+        if (compiled == null) {
+            compiled = compile();
+        }
+        return compiled;
+    }
+
+    /*
+     * Freezes the DFA for an operation that reads the symbols of Sigma only and cannot carry range transitions
+     * @param operation the name of the operation, for the exception message
+     * @return the compiled DFA
+     * @throws UnsupportedOperationException if the DFA has a code point range transition
+     */
+    CompiledDFA freezeWithoutRanges(String operation) {
+        checkNoRanges(operation);
+        return freeze();
+    }
+
+    private void checkNoRanges(String operation) {
+        if (table.rangeCount > 0) {
+            throw new UnsupportedOperationException(operation + " does not support code point range transitions");
+        }
+    }
+
+    /*
+     * Freezes the DFA with its transition table stored off the Java heap, for very large automata
+     * Symbol classes are found on this DFA's rows and the off-heap table is filled from them directly, so
+     * no compiled form or other |Q| x classes array is built on the heap; only this DFA's own rows are,
+     * so drop the DFA once frozen. Unlike freeze, states that cannot reach a final state are kept.
+     * Close the result to free its memory.
+     * @return the off-heap DFA
+     */
+    public OffHeapDFA freezeOffHeap() {
+        char[] symbols = Arrays.copyOf(table.symbols, table.symbolCount);
+        int[] columnClass = new int[symbols.length];
+        int classCount = SymbolClasses.refine(table, columnClass);
+        SymbolClasses classes = SymbolClasses.build(symbols, symbolClasses(columnClass), classCount);
+        return new OffHeapDFA(table, classes, columnClass, classCount);
+    }
+
+    /*
+     * Takes an immutable snapshot to share between threads
+     * The DFA itself is a builder and must not be used from several threads without locking.
+     * The snapshot has only final fields over arrays that are never written after construction,
+     * so it is safely published however it is handed over, and any number of threads can match
+     * on it with no synchronization. Keep the current snapshot in a DFAHolder to replace it at runtime.
+     * @return the snapshot, the same instance as freeze
+     */
+    public CompiledDFA snapshot() {
+        return freeze();
+    }
+
+    /*
+     * Writes the DFA in a compact binary format that MappedDFA.load matches directly off a memory mapping
+     * The compiled form is written, so transitions into states that can never reach a final state are left out.
+     * @param out the stream to write to; it is not closed
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        freezeWithoutRanges("writeTo").writeTo(out);
+    }
+
+    /*
+     * Writes the DFA in the binary format read by MappedDFA.load, replacing the file if it exists
+     * @param file the file to write
+     */
+    public void writeTo(Path file) throws IOException {
+        freezeWithoutRanges("writeTo").writeTo(file);
+    }
+
+    /*
+     * Creates a cursor for input that arrives in pieces
+     * The matcher works on the DFA as it is now; later changes to this DFA are not seen by it.
+     * @return a new matcher positioned at the start state
+     */
+    public DFAMatcher newMatcher() {
+        return freeze().newMatcher();
+    }
+
+    /*
+     * Finds the first span of a text this DFA accepts: the leftmost one, and the longest of those
+     * @param text the text to search
+     * @return the match, or null if no span of the text is accepted
+     */
+    public DFAMatch find(CharSequence text) {
+        return find(text, MatchKind.LEFTMOST_LONGEST);
+    }
+
+    /*
+     * Finds the first span of a text this DFA accepts
+     * @param text the text to search
+     * @param kind how to pick among matches that start at the same place
+     * @return the match, or null if no span of the text is accepted
+     */
+    public DFAMatch find(CharSequence text, MatchKind kind) {
+        DFASearcher searcher = searcher(text, kind);
+        return searcher.find() ? new DFAMatch(searcher.start(), searcher.end()) : null;
+    }
+
+    /*
+     * Finds every non-overlapping span of a text this DFA accepts, leftmost-longest, in one scan of the text
+     * @param text the text to search
+     * @return the matches in order
+     */
+    public Stream<DFAMatch> findAll(CharSequence text) {
+        return findAll(text, MatchKind.LEFTMOST_LONGEST);
+    }
+
+    /*
+     * Finds every non-overlapping span of a text this DFA accepts
+     * @param text the text to search
+     * @param kind how to pick among matches that start at the same place
+     * @return the matches in order
+     */
+    public Stream<DFAMatch> findAll(CharSequence text, MatchKind kind) {
+        return searcher(text, kind).results();
+    }
+
+    /*
+     * Creates a searcher that reports matches without allocating, like java.util.regex.Matcher.find
+     * The searcher works on the DFA as it is now; later changes to this DFA are not seen by it.
+     * @param text the text to search
+     * @param kind how to pick among matches that start at the same place
+     * @return a new searcher positioned at the start of the text
+     */
+    public DFASearcher searcher(CharSequence text, MatchKind kind) {
+        return freeze().searcher(text, kind);
+    }
+
+    /*
+     * Turns on profiling of the accepts methods
+     * Until disableProfiling, accepts runs through a DFAProfiler that counts state visits and
+     * transitions, keeps length and time histograms and records slow matches as JFR events; read
+     * them with getProfiler().snapshot(). Only the DFA's own accepts methods are profiled, not the
+     * compiled form or acceptsAll and acceptsFile. Changing the DFA turns profiling off, since the
+     * counters are for the automaton they were collected on.
+     * With profiling off, accepts costs one more null check per call and the matching loop is unchanged.
+     * @return the profiler, the same one until profiling is turned off
+     */
+    public DFAProfiler enableProfiling() {
+        if (profiler == null) {
+            profiler = new DFAProfiler(freeze());
         }
-        return finalStates.contains(currentState);
+        return profiler;
+    }
+
+    /*
+     * Turns profiling off, so accepts goes straight to the compiled table again
+     */
+    public void disableProfiling() {
+        profiler = null;
+    }
+
+    /*
+     * Gives the profiler accepts currently goes through
+     * @return the profiler, or null if profiling is off
+     */
+    public DFAProfiler getProfiler() {
+        return profiler;
+    }
+
+    /*
+     * Sets when accepts switches to parallel speculative matching on the common fork/join pool
+     * The compiled form and the profiler are kept; they move to a copy sharing the same tables.
+     * @param minLength the shortest input that is matched in parallel
+     * @param maxStates the largest number of states for which parallel matching is used,
+     *                  since every chunk is run from each state
+     */
+    public void setParallelThresholds(int minLength, int maxStates) {
+        parallelMinLength = minLength;
+        parallelMaxStates = maxStates;
+        if (compiled != null) {
+            compiled = compiled.withParallelThresholds(minLength, maxStates);
+            if (profiler != null) profiler.retarget(compiled);
+        }
+    }
+
+    // Builds a new compiled form of the current states and transitions
+    // Symbol classes are found on the table's columns first, so only the |Q| x classes table is ever filled
+    private CompiledDFA compile() {
+        String[] names = Arrays.copyOf(table.names, table.stateCount);
+        char[] symbols = Arrays.copyOf(table.symbols, table.symbolCount);
+        int[] columnClass = new int[symbols.length];
+        int classCount = SymbolClasses.refine(table, columnClass);
+        int[] symbolClass = symbolClasses(columnClass);
+        int[] delta = table.classTable(columnClass, classCount);
+        boolean[] finals = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            finals[i] = table.finals.get(i);
+        }
+        return new CompiledDFA(names, symbols, symbolClass, classCount, delta, finals, table.start)
+                .withParallelThresholds(parallelMinLength, parallelMaxStates);
+    }
+
+    // Class of each symbol, in the order the symbols were added, from the class of each column
+    private int[] symbolClasses(int[] columnClass) {
+        int[] column = columnsInOrder();
+        int[] symbolClass = new int[column.length];
+        for (int j = 0; j < column.length; j++) {
+            symbolClass[j] = columnClass[column[j]];
+        }
+        return symbolClass;
+    }
+
+    // Column of each symbol, in the order the symbols were added
+    int[] columnsInOrder() {
+        int[] column = new int[table.symbolCount];
+        for (int j = 0; j < column.length; j++) {
+            column[j] = columns.get(table.symbols[j]);
+        }
+        return column;
+    }
+
+    /*
+     * Sets every transition of a state at once, for loaders that have already validated their input
+     * Skips the name lookups and checks of addTransition.
+     * @param from the state id, its position in the order states were added
+     * @param column the column of each symbol, from columnsInOrder, taken once for all the rows
+     * @param targets the target state id on each symbol, in the order symbols were added, or CompiledDFA.DEAD for none
+     */
+    void setRow(int from, int[] column, int[] targets) {
+        TransitionTable t = mutableTable();
+        for (int j = 0; j < targets.length; j++) {
+            t.setTarget(from, column[j], targets[j]);
+        }
+    }
+
+    /*
+     * The transitions of a state as a live map, for DFAState.getTransitions
+     * @param id the state id
+     * @return a map from each symbol with a transition to the target state, backed by this DFA
+     */
+    Map<Character, DFAState> transitionsOf(int id) {
+        return new TransitionMap(id);
+    }
+
+    /*
+     * A map view of one row of the table: reads always see the current transitions, and put and remove
+     * add and drop transitions of the DFA. Keys must be symbols of Sigma and values states of this DFA.
+     * Entries are iterated in the order the symbols were added.
+     */
+    private final class TransitionMap extends AbstractMap<Character, DFAState> {
+        private final int id;
+
+        TransitionMap(int id) {
+            this.id = id;
+        }
+
+        // the target of the row on a symbol, or DEAD if the symbol is not in Sigma or has no transition
+        private int target(Object symbol) {
+            Integer column = (symbol instanceof Character) ? columns.get(symbol) : null;
+            return (column == null) ? CompiledDFA.DEAD : table.target(id, column);
+        }
+
+        @Override
+        public DFAState get(Object symbol) {
+            int to = target(symbol);
+            return (to == CompiledDFA.DEAD) ? null : view(to);
+        }
+
+        @Override
+        public boolean containsKey(Object symbol) {
+            return target(symbol) != CompiledDFA.DEAD;
+        }
+
+        @Override
+        public DFAState put(Character symbol, DFAState toState) {
+            Integer column = columns.get(symbol);
+            if (column == null) throw new IllegalArgumentException("symbol not in Sigma: " + symbol);
+            int to = stateId(toState.getName());
+            if (to < 0) throw new IllegalArgumentException("not a state of this DFA: " + toState.getName());
+            DFAState old = get(symbol);
+            mutableTable().setTarget(id, column, to);
+            return old;
+        }
+
+        @Override
+        public DFAState remove(Object symbol) {
+            DFAState old = get(symbol);
+            if (old != null) mutableTable().setTarget(id, columns.get(symbol), CompiledDFA.DEAD);
+            return old;
+        }
+
+        @Override
+        public Set<Map.Entry<Character, DFAState>> entrySet() {
+            return new AbstractSet<Map.Entry<Character, DFAState>>() {
+                @Override
+                public Iterator<Map.Entry<Character, DFAState>> iterator() {
+                    return new Iterator<Map.Entry<Character, DFAState>>() {
+                        // the next column in symbol order with a transition, and the symbol last returned
+                        private int next = advance(0);
+                        private Character last;
+
+                        private int advance(int j) {
+                            while (j < table.symbolCount && target(table.symbols[j]) == CompiledDFA.DEAD) {
+                                j++;
+                            }
+                            return j;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < table.symbolCount;
+                        }
+
+                        @Override
+                        public Map.Entry<Character, DFAState> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            last = table.symbols[next];
+                            next = advance(next + 1);
+                            final Character symbol = last;
+                            return new SimpleEntry<Character, DFAState>(symbol, get(symbol)) {
+                                @Override
+                                public DFAState setValue(DFAState toState) {
+                                    super.setValue(toState);
+                                    return put(symbol, toState);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) throw new IllegalStateException();
+                            TransitionMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int count = 0;
+                    for (int j = 0; j < table.symbolCount; j++) {
+                        if (target(table.symbols[j]) != CompiledDFA.DEAD) count++;
+                    }
+                    return count;
+                }
+            };
+        }
+    }
+
+    // The state object for an id, the same one on every call
+    private DFAState view(int id) {
+        if (views == null || views.length < table.stateCount) {
+            views = Arrays.copyOf((views == null) ? new DFAState[0] : views, table.names.length);
+        }
+        if (views[id] == null) {
+            views[id] = new DFAState(this, id, table.names[id]);
+        }
+        return views[id];
+    }
+
+    /*
+     * Builds the minimal DFA that accepts the same language, using Hopcroft's algorithm
+     * Unreachable states and states that can never reach a final state are dropped.
+     * Every remaining state is named after the earliest added state it replaces, and states
+     * keep their original relative order, so toString output is stable.
+     * @return a new minimal DFA with the same alphabet
+     */
+    public DFA minimize() {
+        return Minimizer.minimize(freezeWithoutRanges("minimize"));
     }
 
     // Return alphabet (Sigma)
     @Override
     public Set<Character> getSigma() {
-        return new HashSet<>(alphabet);
+        Set<Character> sigma = new HashSet<>();
+        for (int j = 0; j < table.symbolCount; j++) {
+            sigma.add(table.symbols[j]);
+        }
+        return sigma;
     }
 
     // Return state object if found
     @Override
     public State getState(String name) {
-        return stateMap.getOrDefault(name, null);
+        Integer id = table.ids.get(name);
+        return (id == null) ? null : view(id);
     }
 
     
     // Return true if state is final
     @Override
     public boolean isFinal(String name) {
-        return finalStates.contains(name);
+        Integer id = table.ids.get(name);
+        return id != null && table.finals.get(id);
     }
 
     // Check if state is the start state
     @Override
     public boolean isStart(String name) {
-        return name.equals(startState);
+        return name.equals((table.start == CompiledDFA.DEAD) ? null : table.names[table.start]);
     }
 
-    @Override
-public String toString() {
-    StringBuilder sb = new StringBuilder();
-    sb.append("Q = {").append(String.join(" ", states)).append("}\n");
-    sb.append("Sigma = {");
-    for (char symbol : alphabet) {
-        sb.append(symbol).append(" ");
-    }
-    if (!alphabet.isEmpty()) {
-        sb.setLength(sb.length() - 1);  // This is new! What it is doing is removing the first and last space from the set for Q, Sigma, and F, since those are unwanted.
+    /*
+     * Writes the same text as toString, one row of the delta table at a time
+     * Nothing is allocated per row or per cell, so huge tables can be written to a file directly.
+     * Like toString, this shows the symbols of Sigma only and leaves code point range transitions out.
+     * @param out where to append the text, such as a StringBuilder or a BufferedWriter
+     */
+    public void appendTo(Appendable out) throws IOException {
+        DFAExporter.writeText(this, out);
     }
-    sb.append("}\n");
 
-    sb.append("delta =\n\t");
-    for (char symbol : alphabet) {
-        sb.append(symbol).append("\t");
+    /*
+     * Writes the same text as toString to a writer, one row of the delta table at a time
+     * This is the text format read by DFAReader; writeTo writes the binary format instead.
+     * @param out the writer; it is neither buffered nor closed here
+     * @throws UnsupportedOperationException if the DFA has a code point range transition, which the format cannot hold
+     */
+    public void writeText(Writer out) throws IOException {
+        checkNoRanges("writeText");
+        appendTo(out);
     }
-    sb.append("\n");
 
-    for (String state : states) {
-        sb.append(state).append("\t");
-        for (char symbol : alphabet) {
-            sb.append(stateMap.get(state).getTransitions().getOrDefault(symbol, new DFAState("-")).getName()).append("\t");
+    // States and alphabet in the order they were added, then the delta table row by row, then q0 and F
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            appendTo(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never throws
         }
-        sb.append("\n");
+        return sb.toString();
     }
 
-    sb.append("q0 = ").append(startState).append("\n");
-    sb.append("F = {").append(String.join(" ", finalStates)).append("}");
-
-    return sb.toString();
-}
+    // The shared table, for DFAExporter
+    TransitionTable table() {
+        return table;
+    }
 }
- 
\ No newline at end of file
@@ -0,0 +1,174 @@
+package fa.dfa;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link DFA} as text, one row of the transition table at a time.
+ *
+ * Every format is streamed straight into an {@link Appendable}: apart from one int per symbol,
+ * no memory is used beyond what the target holds, and nothing is allocated per row or per cell,
+ * so a table with millions of rows can go to a file without ever existing as one String.
+ * When writing to a Writer, wrap it in a BufferedWriter, since the output is appended in small pieces.
+ */
+public final class DFAExporter {
+
+    private DFAExporter() {
+    }
+
+    /**
+     * Writes the toString format: Q, Sigma, the delta table, q0 and F.
+     * @param dfa the DFA to write
+     * @param out where to append the text
+     * @throws IOException if appending fails
+     */
+    public static void writeText(DFA dfa, Appendable out) throws IOException {
+        TransitionTable table = dfa.table();
+        out.append("Q = {");
+        for (int q = 0; q < table.stateCount; q++) {
+            if (q > 0) out.append(' ');
+            out.append(table.names[q]);
+        }
+        out.append("}\nSigma = {");
+        for (int j = 0; j < table.symbolCount; j++) {
+            if (j > 0) out.append(' ');
+            out.append(table.symbols[j]);
+        }
+        out.append("}\ndelta =\n\t");
+        for (int j = 0; j < table.symbolCount; j++) {
+            out.append(table.symbols[j]).append('\t');
+        }
+        out.append('\n');
+
+        int[] column = dfa.columnsInOrder();
+        for (int q = 0; q < table.stateCount; q++) {
+            out.append(table.names[q]).append('\t');
+            for (int c : column) {
+                int to = table.target(q, c);
+                out.append((to == CompiledDFA.DEAD) ? "-" : table.names[to]).append('\t');
+            }
+            out.append('\n');
+        }
+
+        out.append("q0 = ").append((table.start == CompiledDFA.DEAD) ? "null" : table.names[table.start]);
+        out.append("\nF = {");
+        for (int i = 0; i < table.finalCount; i++) {
+            if (i > 0) out.append(' ');
+            out.append(table.names[table.finalOrder[i]]);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes a Graphviz DOT digraph: final states are double circles, an arrow from a point marks the
+     * start state, and every transition is an edge labelled with its symbol.
+     * @param dfa the DFA to write
+     * @param out where to append the graph
+     * @throws IOException if appending fails
+     */
+    public static void writeDot(DFA dfa, Appendable out) throws IOException {
+        TransitionTable table = dfa.table();
+        out.append("digraph DFA {\n\trankdir=LR;\n\tnode [shape=circle];\n");
+        if (table.start != CompiledDFA.DEAD) {
+            out.append("\t\"\" [shape=point];\n\t\"\" -> ");
+            dotId(out, table.names[table.start]);
+            out.append(";\n");
+        }
+        for (int i = 0; i < table.finalCount; i++) {
+            out.append('\t');
+            dotId(out, table.names[table.finalOrder[i]]);
+            out.append(" [shape=doublecircle];\n");
+        }
+        int[] column = dfa.columnsInOrder();
+        for (int q = 0; q < table.stateCount; q++) {
+            for (int j = 0; j < column.length; j++) {
+                int to = table.target(q, column[j]);
+                if (to == CompiledDFA.DEAD) continue;
+                out.append('\t');
+                dotId(out, table.names[q]);
+                out.append(" -> ");
+                dotId(out, table.names[to]);
+                out.append(" [label=");
+                dotId(out, table.symbols[j]);
+                out.append("];\n");
+            }
+        }
+        out.append("}\n");
+    }
+
+    /**
+     * Writes the transition table as CSV with a header row. Each row holds the state, whether it is
+     * the start state, whether it is final, and its target on each symbol, empty where there is none.
+     * Cells are quoted as RFC 4180 requires.
+     * @param dfa the DFA to write
+     * @param out where to append the table
+     * @throws IOException if appending fails
+     */
+    public static void writeCsv(DFA dfa, Appendable out) throws IOException {
+        TransitionTable table = dfa.table();
+        out.append("state,start,final");
+        for (int j = 0; j < table.symbolCount; j++) {
+            out.append(',');
+            csvCell(out, table.symbols[j]);
+        }
+        out.append("\r\n");
+        int[] column = dfa.columnsInOrder();
+        for (int q = 0; q < table.stateCount; q++) {
+            csvCell(out, table.names[q]);
+            out.append((q == table.start) ? ",true" : ",false");
+            out.append(table.finals.get(q) ? ",true" : ",false");
+            for (int c : column) {
+                out.append(',');
+                int to = table.target(q, c);
+                if (to != CompiledDFA.DEAD) csvCell(out, table.names[to]);
+            }
+            out.append("\r\n");
+        }
+    }
+
+    // a double-quoted DOT id, escaping quotes and backslashes
+    private static void dotId(Appendable out, CharSequence s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') out.append('\\');
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void dotId(Appendable out, char c) throws IOException {
+        out.append('"');
+        if (c == '"' || c == '\\') out.append('\\');
+        out.append(c).append('"');
+    }
+
+    // a CSV cell, quoted only if it holds a comma, quote or line break
+    private static void csvCell(Appendable out, CharSequence s) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(s);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void csvCell(Appendable out, char c) throws IOException {
+        if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+            out.append('"');
+            if (c == '"') out.append('"');
+            out.append(c).append('"');
+        } else {
+            out.append(c);
+        }
+    }
+}
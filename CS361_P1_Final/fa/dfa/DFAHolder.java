@@ -0,0 +1,76 @@
+package fa.dfa;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current snapshot of an automaton that request threads match against,
+ * and lets a newer snapshot replace it atomically.
+ *
+ * Reading the current snapshot is a single volatile read, so matching takes no lock.
+ * A match that is already running keeps using the snapshot it started with; matches
+ * that start after {@link #set(CompiledDFA)} returns see the new one.
+ */
+public final class DFAHolder {
+    private final AtomicReference<CompiledDFA> current;
+
+    /**
+     * @param initial the snapshot to match against until it is replaced
+     */
+    public DFAHolder(CompiledDFA initial) {
+        if (initial == null) throw new NullPointerException("initial");
+        this.current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * @return the current snapshot
+     */
+    public CompiledDFA get() {
+        return current.get();
+    }
+
+    /**
+     * Replaces the current snapshot.
+     * @param next the new snapshot
+     * @return the snapshot it replaced
+     */
+    public CompiledDFA set(CompiledDFA next) {
+        if (next == null) throw new NullPointerException("next");
+        return current.getAndSet(next);
+    }
+
+    /**
+     * Takes a snapshot of a DFA and makes it the current one.
+     * @param dfa the builder to snapshot; it may be changed again once this returns
+     * @return the snapshot it replaced
+     */
+    public CompiledDFA set(DFA dfa) {
+        return set(dfa.snapshot());
+    }
+
+    /**
+     * Replaces the current snapshot only if no one else replaced it since it was read.
+     * @param expected the snapshot the new one was derived from
+     * @param next the new snapshot
+     * @return true if the snapshot was replaced
+     */
+    public boolean compareAndSet(CompiledDFA expected, CompiledDFA next) {
+        if (next == null) throw new NullPointerException("next");
+        return current.compareAndSet(expected, next);
+    }
+
+    /**
+     * Checks a string against the current snapshot.
+     * @param s the string to check
+     * @return true if the current snapshot accepts it
+     */
+    public boolean accepts(CharSequence s) {
+        return current.get().accepts(s);
+    }
+
+    /**
+     * @return a matcher bound to the current snapshot, which it keeps using even if the snapshot is replaced
+     */
+    public DFAMatcher newMatcher() {
+        return current.get().newMatcher();
+    }
+}
@@ -0,0 +1,49 @@
+package fa.dfa;
+
+/**
+ * A span of a text accepted by a DFA, from start inclusive to end exclusive.
+ */
+public final class DFAMatch {
+    private final int start;
+    private final int end;
+
+    /**
+     * @param start index of the first char of the span
+     * @param end index after the last char of the span
+     */
+    public DFAMatch(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return index of the first char of the span
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return index after the last char of the span
+     */
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DFAMatch)) return false;
+        DFAMatch other = (DFAMatch) o;
+        return start == other.start && end == other.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * start + end;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
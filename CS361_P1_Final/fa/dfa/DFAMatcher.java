@@ -0,0 +1,105 @@
+package fa.dfa;
+
+/**
+ * A resumable cursor over a {@link CompiledDFA} for input that arrives in pieces.
+ *
+ * The only per-session state is the current state id, so a matcher is cheap to keep
+ * around for every open session. A partial match can be parked with {@link #snapshot()}
+ * and picked up later, on this or any other matcher of the same DFA, with {@link #restore(int)}.
+ * A matcher is not thread-safe, but any number of matchers can share one compiled DFA.
+ */
+public final class DFAMatcher {
+    /** The automaton this matcher walks */
+    private final CompiledDFA dfa;
+    /** Current state id, or CompiledDFA.DEAD */
+    private int state;
+
+    /**
+     * Creates a matcher positioned at the start state.
+     * @param dfa the compiled DFA to match against
+     */
+    public DFAMatcher(CompiledDFA dfa) {
+        this.dfa = dfa;
+        this.state = dfa.startState();
+    }
+
+    /**
+     * Consumes one char.
+     * @param c the next input char
+     * @return false if the run is dead, so no further input can lead to acceptance
+     */
+    public boolean feed(char c) {
+        state = dfa.step(state, c);
+        return state != CompiledDFA.DEAD;
+    }
+
+    /**
+     * Consumes part of a char array.
+     * @param input the input chars
+     * @param off index of the first char
+     * @param len number of chars to consume
+     * @return false if the run is dead, so no further input can lead to acceptance
+     */
+    public boolean feed(char[] input, int off, int len) {
+        state = dfa.run(state, input, off, len);
+        return state != CompiledDFA.DEAD;
+    }
+
+    /**
+     * Consumes a character sequence.
+     * @param input the input characters
+     * @return false if the run is dead, so no further input can lead to acceptance
+     */
+    public boolean feed(CharSequence input) {
+        state = dfa.run(state, input, 0, input.length());
+        return state != CompiledDFA.DEAD;
+    }
+
+    /**
+     * @return true if the input consumed so far is accepted
+     */
+    public boolean isAccepting() {
+        return dfa.isFinal(state);
+    }
+
+    /**
+     * @return true if no continuation of the input consumed so far can be accepted
+     */
+    public boolean isDead() {
+        return state == CompiledDFA.DEAD;
+    }
+
+    /**
+     * Forgets all consumed input and returns to the start state.
+     */
+    public void reset() {
+        state = dfa.startState();
+    }
+
+    /**
+     * Captures the progress of the match without holding on to the consumed input.
+     * @return an opaque token for {@link #restore(int)}
+     */
+    public int snapshot() {
+        return state;
+    }
+
+    /**
+     * Resumes a match captured by {@link #snapshot()} on a matcher of the same compiled DFA.
+     * @param snapshot a token returned by snapshot
+     * @throws IllegalArgumentException if the token is not a state of this DFA
+     */
+    public void restore(int snapshot) {
+        if (snapshot < CompiledDFA.DEAD || snapshot >= dfa.stateCount()) {
+            throw new IllegalArgumentException("not a snapshot of this DFA: " + snapshot);
+        }
+        state = snapshot;
+    }
+
+    /**
+     * @return the compiled DFA this matcher walks
+     */
+    public CompiledDFA getDFA() {
+        return dfa;
+    }
+}
@@ -0,0 +1,365 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Matches on a {@link CompiledDFA} while counting where the runs go and how long they take.
+ *
+ * Each run counts a visit every time it enters a state, including the start state, and a hit for
+ * every (state, symbol class) transition it takes; symbols that every state sends to the same place
+ * share one count. These counters are plain long arrays in a fixed number of stripes, about one per
+ * processor. A run locks a free stripe for as long as it reads a string or a chunk of a reader, so
+ * counting costs two array increments per char plus one uncontended lock per run, and the memory is
+ * at most |Q| x (classes + 1) longs per stripe however many threads match. Nothing is kept per thread,
+ * so a dropped profiler is freed as a whole, even by threads that stay alive. Input lengths and match times go into
+ * LongAdder histograms with power-of-two buckets. A match that takes at least the slow match
+ * threshold is counted and recorded as a fa.dfa.SlowMatch JFR event when a recording has it enabled.
+ *
+ * The profiler runs its own copy of the matching loop, so the plain loop of CompiledDFA is the same
+ * whether or not anything is profiled. See {@link DFA#enableProfiling()} to profile a DFA's accepts calls.
+ * Any number of threads can match on a profiler at once.
+ */
+public final class DFAProfiler {
+    /** Default slow match threshold, 10ms */
+    public static final long DEFAULT_SLOW_MATCH_NANOS = 10_000_000L;
+    /** Number of histogram buckets: one for 0, then one per power of two */
+    public static final int BUCKETS = 65;
+    // Chars read at a time from a Reader
+    private static final int CHUNK_SIZE = 8192;
+    // Most counter stripes a profiler has, however many processors there are
+    private static final int MAX_STRIPES = 64;
+
+    /** The compiled DFA matched on; only ever replaced by a copy sharing its tables */
+    private volatile CompiledDFA dfa;
+    private final SymbolClasses classes;
+    private final int classCount;
+    /** Counter stripes, a power of two of them; a run takes whichever one it can lock */
+    private final Counters[] stripes;
+    private final LongAdder[] lengths = buckets();
+    private final LongAdder[] latencies = buckets();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder slowMatches = new LongAdder();
+    private volatile long slowMatchNanos = DEFAULT_SLOW_MATCH_NANOS;
+
+    /**
+     * @param dfa the compiled DFA to match on
+     */
+    public DFAProfiler(CompiledDFA dfa) {
+        this.dfa = dfa;
+        this.classes = dfa.symbolClasses();
+        this.classCount = dfa.classCount();
+        int count = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripes = new Counters[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Counters();
+        }
+    }
+
+    private static LongAdder[] buckets() {
+        LongAdder[] buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+    // bucket 0 holds 0, bucket i holds [2^(i-1), 2^i)
+    private static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(0, value));
+    }
+
+    // locks the first free stripe, starting from one picked by the thread, or waits for that one if all are busy
+    private Counters lock() {
+        int mask = stripes.length - 1;
+        int home = (System.identityHashCode(Thread.currentThread()) * 0x9E3779B9) >>> 16;
+        for (int i = 0; i < stripes.length; i++) {
+            Counters c = stripes[(home + i) & mask];
+            if (c.lock.tryLock()) return c.allocate(dfa.stateCount(), classCount);
+        }
+        Counters c = stripes[home & mask];
+        c.lock.lock();
+        return c.allocate(dfa.stateCount(), classCount);
+    }
+
+    /**
+     * @return the compiled DFA this profiler matches on
+     */
+    public CompiledDFA getDFA() {
+        return dfa;
+    }
+
+    // moves to a copy of the compiled DFA with other parallel thresholds, which keeps every state id and class
+    void retarget(CompiledDFA copy) {
+        dfa = copy;
+    }
+
+    /**
+     * Sets how long a match must take to count as slow and be recorded as a JFR event
+     * @param nanos the threshold in nanoseconds
+     */
+    public void setSlowMatchNanos(long nanos) {
+        slowMatchNanos = nanos;
+    }
+
+    /**
+     * Checks if a string is accepted by the DFA, counting the run
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean accepts(CharSequence s) {
+        long begin = System.nanoTime();
+        Counters c = lock();
+        int state;
+        try {
+            state = run(c, start(c), s, 0, s.length());
+        } finally {
+            c.lock.unlock();
+        }
+        boolean accepted = dfa.isFinal(state);
+        record(s.length(), System.nanoTime() - begin, accepted);
+        return accepted;
+    }
+
+    /**
+     * Checks if everything a reader produces is accepted by the DFA, counting the run
+     * @param in the input source; reading stops as soon as the run is dead
+     * @return true if the input is accepted, otherwise false
+     * @throws IOException if reading fails
+     */
+    public boolean accepts(Reader in) throws IOException {
+        long begin = System.nanoTime();
+        Counters c = lock();
+        int state;
+        try {
+            state = start(c);
+        } finally {
+            c.lock.unlock();
+        }
+        long length = 0;
+        char[] chunk = new char[CHUNK_SIZE];
+        CharBuffer view = CharBuffer.wrap(chunk);
+        int n;
+        // a stripe is only held while a chunk is counted, never while the reader blocks
+        while (state != CompiledDFA.DEAD && (n = in.read(chunk, 0, chunk.length)) != -1) {
+            c = lock();
+            try {
+                state = run(c, state, view, 0, n);
+            } finally {
+                c.lock.unlock();
+            }
+            length += n;
+        }
+        boolean accepted = dfa.isFinal(state);
+        record(length, System.nanoTime() - begin, accepted);
+        return accepted;
+    }
+
+    /**
+     * Checks if a byte stream in the given charset is accepted by the DFA, counting the run
+     * @param in the encoded input; reading stops as soon as the run is dead
+     * @param charset the encoding of the input
+     * @return true if the decoded input is accepted, otherwise false
+     * @throws IOException if reading fails or the input is not valid in the charset
+     */
+    public boolean accepts(InputStream in, Charset charset) throws IOException {
+        return accepts(new InputStreamReader(in, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)));
+    }
+
+    private int start(Counters c) {
+        int start = dfa.startState();
+        if (start != CompiledDFA.DEAD) c.visits[start]++;
+        return start;
+    }
+
+    // the matching loop of CompiledDFA.run, plus the counting
+    private int run(Counters c, int state, CharSequence input, int off, int len) {
+        if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        final long[] visits = c.visits;
+        final long[] hits = c.hits;
+        final CompiledDFA dfa = this.dfa;
+        final SymbolClasses classes = this.classes;
+        final int width = classCount;
+        for (int i = off, end = off + len; i < end; i++) {
+            // class 0 leads nowhere from any state, so there is nothing to count
+            int k = classes.classOf(input.charAt(i));
+            if (k == 0) return CompiledDFA.DEAD;
+            hits[state * width + k]++;
+            state = dfa.transition(state, k);
+            if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+            visits[state]++;
+        }
+        return state;
+    }
+
+    private void record(long length, long nanos, boolean accepted) {
+        matches.increment();
+        lengths[bucket(length)].increment();
+        latencies[bucket(nanos)].increment();
+        if (nanos >= slowMatchNanos) {
+            slowMatches.increment();
+            SlowMatchEvent event = new SlowMatchEvent();
+            if (event.isEnabled()) {
+                event.length = length;
+                event.matchTime = nanos;
+                event.accepted = accepted;
+                event.states = dfa.stateCount();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Adds up the counters of every stripe, waiting for the string or chunk each one is counting.
+     * Counts of reader matches still running may be partly included.
+     * @return the totals so far
+     */
+    public Snapshot snapshot() {
+        Counters total = new Counters().allocate(dfa.stateCount(), classCount);
+        for (Counters c : stripes) {
+            c.lock.lock();
+            try {
+                if (c.visits != null) total.add(c);
+            } finally {
+                c.lock.unlock();
+            }
+        }
+        return new Snapshot(this, total.visits, total.hits, sum(lengths), sum(latencies), matches.sum(), slowMatches.sum());
+    }
+
+    private static long[] sum(LongAdder[] buckets) {
+        long[] sums = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            sums[i] = buckets[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * The counters of one stripe, or a total of several. The arrays of a stripe are only allocated
+     * once a run locks it, and only touched while it is locked.
+     */
+    private static final class Counters {
+        final ReentrantLock lock = new ReentrantLock();
+        long[] visits;
+        /** Hits indexed by state * classes + class, like the compiled table, so the index fits in an int */
+        long[] hits;
+
+        Counters allocate(int states, int classes) {
+            if (visits == null) {
+                visits = new long[states];
+                hits = new long[Math.multiplyExact(states, classes)];
+            }
+            return this;
+        }
+
+        void add(Counters c) {
+            for (int q = 0; q < visits.length; q++) {
+                visits[q] += c.visits[q];
+            }
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] += c.hits[i];
+            }
+        }
+    }
+
+    /**
+     * The counts of a profiler at one point in time.
+     */
+    public static final class Snapshot {
+        private final DFAProfiler profiler;
+        private final long[] visits;
+        private final long[] hits;
+        private final long[] lengths;
+        private final long[] latencies;
+        private final long matches;
+        private final long slowMatches;
+
+        Snapshot(DFAProfiler profiler, long[] visits, long[] hits, long[] lengths, long[] latencies,
+                long matches, long slowMatches) {
+            this.profiler = profiler;
+            this.visits = visits;
+            this.hits = hits;
+            this.lengths = lengths;
+            this.latencies = latencies;
+            this.matches = matches;
+            this.slowMatches = slowMatches;
+        }
+
+        /**
+         * @return the number of accepts calls
+         */
+        public long matches() {
+            return matches;
+        }
+
+        /**
+         * @return the number of accepts calls that took at least the slow match threshold
+         */
+        public long slowMatches() {
+            return slowMatches;
+        }
+
+        /**
+         * @param state a state id of the compiled DFA
+         * @return the number of times runs entered the state
+         */
+        public long visits(int state) {
+            return visits[state];
+        }
+
+        /**
+         * @return the visit count of every state, indexed by state id
+         */
+        public long[] visits() {
+            return visits.clone();
+        }
+
+        /**
+         * Symbols that every state sends to the same place share one count, so this is the number of
+         * times runs read any symbol of the same class as the given one in the state.
+         * @param state a state id of the compiled DFA
+         * @param symbol a symbol of Sigma
+         * @return the number of times runs read the symbol's class in the state, 0 for a char not in Sigma
+         *         or one that no state has a transition on
+         */
+        public long hits(int state, char symbol) {
+            int k = profiler.classes.classOf(symbol);
+            return (k == 0) ? 0 : hits[state * profiler.classCount + k];
+        }
+
+        // the hit counts, indexed by state * classCount + class id, for CompiledDFA.relayout
+        long[] hitsByClass() {
+            return hits;
+        }
+
+        int classCount() {
+            return profiler.classCount;
+        }
+
+        /**
+         * Bucket 0 counts empty inputs and bucket i counts lengths from 2^(i-1) to 2^i - 1.
+         * @return the input length histogram
+         */
+        public long[] lengthHistogram() {
+            return lengths.clone();
+        }
+
+        /**
+         * Bucket i counts matches that took from 2^(i-1) to 2^i - 1 nanoseconds.
+         * @return the match time histogram
+         */
+        public long[] latencyHistogram() {
+            return latencies.clone();
+        }
+    }
+}
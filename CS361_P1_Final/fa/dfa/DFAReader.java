@@ -0,0 +1,194 @@
+package fa.dfa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads a DFA back from the text format written by {@link DFA#toString()}.
+ *
+ * The input is read one token at a time through a fixed-size buffer, so apart from the DFA being
+ * built only the current token is held in memory, however long the Q line or the delta table is.
+ * Whitespace is not significant, so both the toString layout and the spaced-out layout of
+ * {@link DFAInterface#toString()} are accepted. A "-" in the delta table is a missing transition and
+ * "q0 = null" means there is no start state. Transitions are set a whole row at a time on the
+ * state ids, skipping the name lookups and checks of {@link DFA#addTransition(String, String, char)}.
+ *
+ * State names must not contain whitespace, '{' or '}', and symbols must not be whitespace,
+ * '{' or '}', since the format has no way to quote them. A state named "-" is rejected, since it
+ * could not be told apart from a missing transition. For every other DFA,
+ * reading the output of toString gives a DFA with exactly the same toString.
+ */
+public final class DFAReader {
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    private int line = 1;
+    /** Line the last token started on, for error messages */
+    private int tokenLine;
+    private final StringBuilder token = new StringBuilder();
+
+    private DFAReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads one DFA from a character stream.
+     * @param in the text to read; it may be read past the end of the DFA, and it is not closed
+     * @return the DFA
+     * @throws IOException if reading fails or the text is not a DFA in the toString format
+     */
+    public static DFA read(Reader in) throws IOException {
+        return new DFAReader(in).readDFA();
+    }
+
+    /**
+     * Reads one DFA from a UTF-8 text file.
+     * @param file the file to read
+     * @return the DFA
+     * @throws IOException if reading fails or the file is not a DFA in the toString format
+     */
+    public static DFA read(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(in);
+        }
+    }
+
+    private DFA readDFA() throws IOException {
+        DFA dfa = new DFA();
+
+        expectHeader("Q");
+        readSet(name -> {
+            if (name.equals("-")) throw error("state name - is reserved for a missing transition");
+            if (!dfa.addState(name)) throw error("duplicate state " + name);
+        });
+        final int stateCount = dfa.stateCount();
+
+        expectHeader("Sigma");
+        StringBuilder sigma = new StringBuilder();
+        Set<Character> seenSymbols = new HashSet<>();
+        readSet(t -> {
+            char symbol = symbol(t);
+            if (!seenSymbols.add(symbol)) throw error("duplicate symbol " + symbol);
+            dfa.addSigma(symbol);
+            sigma.append(symbol);
+        });
+        char[] symbols = sigma.toString().toCharArray();
+
+        expectHeader("delta");
+        for (char symbol : symbols) {
+            String t = next("delta column");
+            if (t.length() != 1 || t.charAt(0) != symbol) throw error("expected column " + symbol + " but found " + t);
+        }
+        boolean[] seen = new boolean[stateCount];
+        int[] targets = new int[symbols.length];
+        int[] column = dfa.columnsInOrder();
+        for (int r = 0; r < stateCount; r++) {
+            String name = next("delta row");
+            int from = state(dfa, name);
+            if (seen[from]) throw error("second delta row for " + name);
+            seen[from] = true;
+            for (int j = 0; j < symbols.length; j++) {
+                String t = next("transition");
+                targets[j] = t.equals("-") ? CompiledDFA.DEAD : state(dfa, t);
+            }
+            dfa.setRow(from, column, targets);
+        }
+
+        expectHeader("q0");
+        String start = next("start state");
+        if (!start.equals("null") || dfa.stateId(start) >= 0) {
+            if (!dfa.setStart(start)) throw error("unknown state " + start);
+        }
+
+        expectHeader("F");
+        readSet(name -> {
+            if (!dfa.setFinal(name)) throw error("unknown state " + name);
+        });
+        return dfa;
+    }
+
+    private void expectHeader(String name) throws IOException {
+        expect(name);
+        expect("=");
+    }
+
+    private void expect(String expected) throws IOException {
+        String t = next(expected);
+        if (!t.equals(expected)) throw error("expected " + expected + " but found " + t);
+    }
+
+    /** Receives the members of a set as they are read */
+    private interface Member {
+        void accept(String token) throws IOException;
+    }
+
+    // reads { a b ... }, handing each member over as soon as it is read
+    private void readSet(Member member) throws IOException {
+        expect("{");
+        for (String t = next("}"); !t.equals("}"); t = next("}")) {
+            if (t.equals("{")) throw error("unexpected {");
+            member.accept(t);
+        }
+    }
+
+    private int state(DFA dfa, String name) throws IOException {
+        int id = dfa.stateId(name);
+        if (id < 0) throw error("unknown state " + name);
+        return id;
+    }
+
+    private char symbol(String t) throws IOException {
+        if (t.length() != 1) throw error("symbol must be a single char: " + t);
+        return t.charAt(0);
+    }
+
+    private IOException error(String message) {
+        return new IOException("line " + tokenLine + ": " + message);
+    }
+
+    /**
+     * Reads the next token: a run of non-whitespace chars, or a single brace.
+     * @param what what was expected, for the error at end of input
+     */
+    private String next(String what) throws IOException {
+        int c = read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = read();
+        }
+        tokenLine = line;
+        if (c == -1) throw error("unexpected end of input, expected " + what);
+        if (c == '{' || c == '}') return (c == '{') ? "{" : "}";
+        token.setLength(0);
+        while (c != -1 && !Character.isWhitespace(c) && c != '{' && c != '}') {
+            token.append((char) c);
+            c = read();
+        }
+        if (c != -1) {
+            // leave the delimiter for the next token
+            pos--;
+            if (c == '\n') line--;
+        }
+        return token.toString();
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        char c = buffer[pos++];
+        if (c == '\n') line++;
+        return c;
+    }
+}
@@ -0,0 +1,322 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds the spans of a text that a DFA accepts, one non-overlapping match after another,
+ * in the manner of {@link java.util.regex.Matcher#find()}.
+ *
+ * Instead of running the DFA from every start position, the search runs one thread per start
+ * position in a single forward scan, and threads that reach the same state are merged, keeping the
+ * leftmost start: from then on they accept the same continuations, so the leftmost one always wins.
+ * Threads that can no longer beat the best match found so far are dropped, and a match is reported
+ * once no better one is possible.
+ *
+ * While a match is being confirmed, the search for the next one already runs from its current end,
+ * as a deeper level of threads, and so on for the match after that. When a match grows or moves, the
+ * levels after it are thrown away and restarted from its new end. A thread of a deeper level that
+ * reaches a state a shallower level holds is dropped: whenever it could accept, the shallower thread
+ * accepts too, which restarts the deeper level anyway. So every state holds at most one thread over
+ * all levels, each char is read once over all the matches, and it costs O(|Q|) table reads at worst,
+ * far less while few states are reachable. Matches confirmed behind a match that is still growing are
+ * kept until it ends, two ints each.
+ *
+ * {@link #find()}, {@link #start()} and {@link #end()} allocate nothing once the searcher has seen
+ * its deepest run of pending matches; the scan state is a few int arrays of |Q| entries allocated once
+ * per searcher. An empty match at a position is followed by a search from the next position.
+ * A searcher is not thread-safe.
+ */
+public final class DFASearcher {
+    private static final int NONE = -1;
+
+    private final CompiledDFA dfa;
+    private final CharSequence text;
+    private final boolean longest;
+
+    // the live threads in level order: their states are active[0 .. count),
+    // the thread in state q started at startOf[q] and belongs to level levelOf[q]
+    private int[] active;
+    private int[] startOf;
+    private int[] levelOf;
+    private int count;
+    // the same for the threads after the next char
+    private int[] nextActive;
+    private int[] nextStartOf;
+    private int[] nextLevelOf;
+
+    // the levels first .. last-1, each the search for one match: the best match it has found so far,
+    // or NONE, and the first position a thread may start at while it has found none
+    private int[] bestStart = new int[8];
+    private int[] bestEnd = new int[8];
+    private int[] spawnFrom = new int[8];
+    private int first;
+    private int last;
+
+    /** The next position to visit or read */
+    private int pos;
+    /** True once the threads have been checked at pos, and only the char at pos is left to read */
+    private boolean visited;
+    /** True once the whole text has been scanned */
+    private boolean done;
+    private int matchStart = NONE;
+    private int matchEnd = NONE;
+
+    /**
+     * @param dfa the compiled DFA whose language is searched for
+     * @param text the text to search; it must not change while it is searched
+     * @param kind how to pick among matches that overlap
+     */
+    public DFASearcher(CompiledDFA dfa, CharSequence text, MatchKind kind) {
+        this.dfa = dfa;
+        this.text = text;
+        this.longest = kind == MatchKind.LEFTMOST_LONGEST;
+        int n = dfa.stateCount();
+        active = new int[n];
+        nextActive = new int[n];
+        startOf = new int[n];
+        nextStartOf = new int[n];
+        levelOf = new int[n];
+        nextLevelOf = new int[n];
+        Arrays.fill(startOf, NONE);
+        Arrays.fill(nextStartOf, NONE);
+        addLevel(0);
+    }
+
+    /**
+     * Looks for the next match after the previous one.
+     * @return true if a match was found; its span is then given by start and end
+     */
+    public boolean find() {
+        final int n = text.length();
+        if (dfa.startState() != CompiledDFA.DEAD) {
+            while (true) {
+                // the first level is done once it has a match and no threads left to improve on it
+                if (first < last && bestStart[first] != NONE && (count == 0 || levelOf[active[0]] != first)) {
+                    matchStart = bestStart[first];
+                    matchEnd = bestEnd[first];
+                    first++;
+                    return true;
+                }
+                if (done) break;
+                if (!visited) {
+                    visit(pos);
+                    visited = true;
+                } else if (pos == n) {
+                    finish();
+                } else {
+                    step(text.charAt(pos));
+                    pos++;
+                    visited = false;
+                }
+            }
+        }
+        matchStart = matchEnd = NONE;
+        return false;
+    }
+
+    /**
+     * Starts threads and records matches at position i, level by level.
+     */
+    private void visit(int i) {
+        final int q0 = dfa.startState();
+        // a thread starting here can only win while its level has no match yet
+        int deepest = last - 1;
+        if (bestStart[deepest] == NONE && i >= spawnFrom[deepest] && startOf[q0] == NONE) {
+            add(q0, i, deepest);
+        }
+        int a = 0;
+        while (a < count) {
+            int level = levelOf[active[a]];
+            int b = a;
+            boolean changed = false;
+            for (; b < count && levelOf[active[b]] == level; b++) {
+                int q = active[b];
+                if (!dfa.isFinal(q)) continue;
+                int s = startOf[q];
+                if (bestStart[level] == NONE || s < bestStart[level] || (s == bestStart[level] && longest)) {
+                    bestStart[level] = s;
+                    bestEnd[level] = i;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                // keep threads that may still start further left, or, when longest, run on from the same start
+                int kept = a;
+                for (int j = a; j < b; j++) {
+                    int q = active[j];
+                    int s = startOf[q];
+                    if (s < bestStart[level] || (longest && s == bestStart[level])) {
+                        active[kept++] = q;
+                    } else {
+                        startOf[q] = NONE;
+                    }
+                }
+                // the levels after this one searched from its old end; search again from the new one,
+                // or from the next position after an empty match
+                for (int j = b; j < count; j++) {
+                    startOf[active[j]] = NONE;
+                }
+                count = kept;
+                b = kept;
+                last = level + 1;
+                int next = addLevel((bestStart[level] == i) ? i + 1 : i);
+                if (spawnFrom[next] == i) {
+                    if (startOf[q0] == NONE) {
+                        add(q0, i, next);
+                    } else if (dfa.isFinal(q0)) {
+                        // a thread of this level holds the start state, so all the next level can still
+                        // find is the empty match here; any longer one would grow this level's match instead
+                        bestStart[next] = i;
+                        bestEnd[next] = i;
+                        addLevel(i + 1);
+                    }
+                }
+            }
+            a = b;
+        }
+    }
+
+    /**
+     * Moves every thread over one char. Threads are stepped in level order, so a state reached from
+     * two levels is kept by the shallower one.
+     */
+    private void step(char c) {
+        int next = 0;
+        for (int a = 0; a < count; a++) {
+            int q = active[a];
+            int s = startOf[q];
+            startOf[q] = NONE;
+            int t = dfa.step(q, c);
+            if (t == CompiledDFA.DEAD) continue;
+            if (nextStartOf[t] == NONE) {
+                nextActive[next++] = t;
+                nextStartOf[t] = s;
+                nextLevelOf[t] = levelOf[q];
+            } else if (nextLevelOf[t] == levelOf[q] && s < nextStartOf[t]) {
+                nextStartOf[t] = s;
+            }
+        }
+        int[] swap = active;
+        active = nextActive;
+        nextActive = swap;
+        swap = startOf;
+        startOf = nextStartOf;
+        nextStartOf = swap;
+        swap = levelOf;
+        levelOf = nextLevelOf;
+        nextLevelOf = swap;
+        count = next;
+    }
+
+    /**
+     * Ends the scan at the end of the text: every level with a match is done, and the last level,
+     * which is still looking for one, has found nothing.
+     */
+    private void finish() {
+        for (int a = 0; a < count; a++) {
+            startOf[active[a]] = NONE;
+        }
+        count = 0;
+        if (bestStart[last - 1] == NONE) last--;
+        done = true;
+    }
+
+    private void add(int q, int start, int level) {
+        active[count++] = q;
+        startOf[q] = start;
+        levelOf[q] = level;
+    }
+
+    /**
+     * Appends a level that has found no match yet, making room by dropping the reported levels
+     * or by growing the arrays.
+     * @return the index of the new level
+     */
+    private int addLevel(int spawn) {
+        if (last == bestStart.length) {
+            if (first >= last / 2) {
+                int kept = last - first;
+                System.arraycopy(bestStart, first, bestStart, 0, kept);
+                System.arraycopy(bestEnd, first, bestEnd, 0, kept);
+                System.arraycopy(spawnFrom, first, spawnFrom, 0, kept);
+                for (int a = 0; a < count; a++) {
+                    levelOf[active[a]] -= first;
+                }
+                first = 0;
+                last = kept;
+            } else {
+                bestStart = Arrays.copyOf(bestStart, last * 2);
+                bestEnd = Arrays.copyOf(bestEnd, last * 2);
+                spawnFrom = Arrays.copyOf(spawnFrom, last * 2);
+            }
+        }
+        bestStart[last] = NONE;
+        bestEnd[last] = NONE;
+        spawnFrom[last] = spawn;
+        return last++;
+    }
+
+    /**
+     * @return index of the first char of the last match
+     * @throws IllegalStateException if the last find found nothing
+     */
+    public int start() {
+        if (matchStart == NONE) throw new IllegalStateException("no match");
+        return matchStart;
+    }
+
+    /**
+     * @return index after the last char of the last match
+     * @throws IllegalStateException if the last find found nothing
+     */
+    public int end() {
+        if (matchEnd == NONE) throw new IllegalStateException("no match");
+        return matchEnd;
+    }
+
+    /**
+     * Starts the search over from the beginning of the text.
+     */
+    public void reset() {
+        for (int a = 0; a < count; a++) {
+            startOf[active[a]] = NONE;
+        }
+        count = 0;
+        first = last = 0;
+        addLevel(0);
+        pos = 0;
+        visited = false;
+        done = false;
+        matchStart = matchEnd = NONE;
+    }
+
+    /**
+     * Streams the remaining matches. Each match is one small object; use find, start and end to avoid even that.
+     * @return the matches in order
+     */
+    public Stream<DFAMatch> results() {
+        Iterator<DFAMatch> it = new Iterator<DFAMatch>() {
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) ready = find();
+                return ready;
+            }
+
+            @Override
+            public DFAMatch next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return new DFAMatch(matchStart, matchEnd);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
@@ -0,0 +1,106 @@
+package fa.dfa;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A fixed group of DFAs that are all matched against the same input in a single pass.
+ *
+ * Symbols are merged into combined classes, the same way {@link ProductDFA} does for its operands:
+ * two chars share a combined class when every DFA puts them in the same class. Each input char then
+ * costs one class lookup for the whole set, plus one table read per DFA still alive. The input
+ * itself is read once, however many DFAs there are.
+ *
+ * Instances are immutable and can be shared between threads; each thread matches with its own
+ * {@link MultiMatcher}.
+ */
+public final class DFASet {
+    /** The member DFAs, indexed by their position in the set */
+    private final CompiledDFA[] members;
+    /** Their transition tables and row widths, for the scan loop */
+    final int[][] deltas;
+    final int[] widths;
+    /** Maps any char to its combined class */
+    final SymbolClasses classes;
+    /** Class of each member for each combined class, indexed by combinedClass * size + member */
+    final int[] memberClasses;
+
+    /**
+     * Compiles every DFA and merges their alphabets.
+     * @param dfas the DFAs, numbered in iteration order
+     */
+    public DFASet(Collection<? extends DFA> dfas) {
+        final int k = dfas.size();
+        members = new CompiledDFA[k];
+        int i = 0;
+        for (DFA dfa : dfas) {
+            members[i++] = dfa.freeze();
+        }
+        deltas = new int[k][];
+        widths = new int[k];
+        Set<Character> alphabet = new LinkedHashSet<>();
+        for (i = 0; i < k; i++) {
+            deltas[i] = members[i].delta();
+            widths[i] = members[i].classCount();
+            for (int j = 0; j < members[i].symbolCount(); j++) {
+                alphabet.add(members[i].symbolAt(j));
+            }
+        }
+        char[] symbols = new char[alphabet.size()];
+        int n = 0;
+        for (char c : alphabet) {
+            symbols[n++] = c;
+        }
+
+        // storing class - 1 makes "class 0 in every member" the all-DEAD column that becomes combined class 0
+        int[] columns = new int[k * symbols.length];
+        for (i = 0; i < k; i++) {
+            for (int j = 0; j < symbols.length; j++) {
+                columns[i * symbols.length + j] = members[i].classOf(symbols[j]) - 1;
+            }
+        }
+        int[] symbolClass = new int[symbols.length];
+        classes = SymbolClasses.compute(symbols, columns, k, symbolClass);
+        memberClasses = new int[classes.classCount() * k];
+        for (int j = 0; j < symbols.length; j++) {
+            for (i = 0; i < k; i++) {
+                memberClasses[symbolClass[j] * k + i] = columns[i * symbols.length + j] + 1;
+            }
+        }
+    }
+
+    /**
+     * Matches every DFA in the set against a string, reading it once.
+     * @param s the string to check
+     * @return the positions of the DFAs that accept it
+     */
+    public BitSet matches(CharSequence s) {
+        MultiMatcher m = newMatcher();
+        m.feed(s);
+        return m.accepted();
+    }
+
+    /**
+     * @return a new matcher with every DFA at its start state
+     */
+    public MultiMatcher newMatcher() {
+        return new MultiMatcher(this);
+    }
+
+    /**
+     * @return the number of DFAs in the set
+     */
+    public int size() {
+        return members.length;
+    }
+
+    /**
+     * @param index a position in the set
+     * @return the compiled DFA at that position
+     */
+    public CompiledDFA get(int index) {
+        return members[index];
+    }
+}
@@ -12,12 +12,19 @@ import fa.State;
  * 
  * A DFA state maintains a mapping of input characters (from Sigma) 
  * to the next DFA state, ensuring that each input leads to a unique destination state.
+ *
+ * A state returned by {@link DFA#getState(String)} is a view of that DFA's transition table:
+ * it holds no transitions of its own and always reflects the DFA's current transitions.
  * 
  * @author [Parker and Sebastian]
  */
 public class DFAState extends State {
-    /** Stores transitions for this state: maps input symbols to destination states */
+    /** Stores transitions for this state: maps input symbols to destination states; null for a view */
     private Map<Character, DFAState> transitions;
+    /** The DFA this state is a view of, or null for a standalone state */
+    private final DFA owner;
+    /** Id of this state in its owner's table */
+    private final int id;
 
     /**
      * Constructs a DFA state with a given name.
@@ -28,6 +35,21 @@ public class DFAState extends State {
     public DFAState(String name) {
         super(name);
         this.transitions = new HashMap<>();
+        this.owner = null;
+        this.id = -1;
+    }
+
+    /**
+     * Constructs a view of a state in a DFA's transition table.
+     *
+     * @param owner The DFA the state belongs to.
+     * @param id The id of the state in the DFA.
+     * @param name The name of the state.
+     */
+    DFAState(DFA owner, int id, String name) {
+        super(name);
+        this.owner = owner;
+        this.id = id;
     }
 
     /**
@@ -37,15 +59,23 @@ public class DFAState extends State {
      * @param toState The destination state for this transition.
      */
     public void addTransition(char symbol, DFAState toState) {
-        transitions.put(symbol, toState);
+        if (owner != null) {
+            owner.addTransition(getName(), toState.getName(), symbol);
+        } else {
+            transitions.put(symbol, toState);
+        }
     }
 
     /**
      * Retrieves all transitions from this state.
      * 
+     * For a state of a DFA the map is backed by the DFA:
+     * it always shows the current transitions, and putting or removing a symbol changes the DFA.
+     * Only symbols of Sigma and states of that DFA can be put in it.
+     *
      * @return A map of input symbols to their corresponding destination states.
      */
     public Map<Character, DFAState> getTransitions() {
-        return transitions;
+        return (owner == null) ? transitions : owner.transitionsOf(id);
     }
 }
@@ -0,0 +1,193 @@
+package fa.dfa;
+
+/**
+ * Language comparison and emptiness checks over {@link CompiledDFA}s.
+ *
+ * Equivalence uses the Hopcroft-Karp union-find algorithm: the two start states are merged,
+ * and every merged pair is followed on each symbol, merging the successors unless they already
+ * share a set. That is nearly linear in the number of states and needs only a few int arrays,
+ * instead of the full product. Pairs are explored breadth-first, so the first pair found that
+ * disagrees on acceptance yields a shortest distinguishing string.
+ */
+final class Equivalence {
+
+    private Equivalence() {
+    }
+
+    /**
+     * Looks for a shortest string accepted by exactly one of two DFAs.
+     * @param a the first DFA
+     * @param b the second DFA
+     * @return a distinguishing string, or null if both accept the same language
+     */
+    static String distinguish(CompiledDFA a, CompiledDFA b) {
+        // one symbol per distinct (class in a, class in b) pair; class 0 in both can never distinguish
+        StringBuilder sigma = new StringBuilder();
+        for (int j = 0; j < a.symbolCount(); j++) {
+            sigma.append(a.symbolAt(j));
+        }
+        for (int j = 0; j < b.symbolCount(); j++) {
+            sigma.append(b.symbolAt(j));
+        }
+        char[] all = sigma.toString().toCharArray();
+        int[] columns = new int[2 * all.length];
+        for (int j = 0; j < all.length; j++) {
+            columns[j] = a.classOf(all[j]) - 1;
+            columns[all.length + j] = b.classOf(all[j]) - 1;
+        }
+        int[] pairClass = new int[all.length];
+        int pairCount = SymbolClasses.compute(all, columns, 2, pairClass).classCount();
+        char[] symbols = new char[pairCount];
+        int[] classA = new int[pairCount];
+        int[] classB = new int[pairCount];
+        for (int j = 0; j < all.length; j++) {
+            symbols[pairClass[j]] = all[j];
+            classA[pairClass[j]] = columns[j] + 1;
+            classB[pairClass[j]] = columns[all.length + j] + 1;
+        }
+
+        // a's states are 0..na-1 with na as its dead state, b's follow from na+1 with its dead state last
+        final int na = a.stateCount();
+        final int nb = b.stateCount();
+        final int offset = na + 1;
+        final int n = na + nb + 2;
+        int[] parent = new int[n];
+        int[] size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+
+        // BFS queue of pairs; from[] and via[] record how each pair was reached, for the witness
+        int[] queueA = new int[n];
+        int[] queueB = new int[n];
+        int[] from = new int[n];
+        char[] via = new char[n];
+        int head = 0;
+        int tail = 0;
+
+        int sa = orDead(a.startState(), na);
+        int sb = orDead(b.startState(), nb);
+        union(parent, size, sa, offset + sb);
+        queueA[tail] = sa;
+        queueB[tail] = sb;
+        from[tail++] = -1;
+        while (head < tail) {
+            int p = queueA[head];
+            int q = queueB[head];
+            if (isFinal(a, p, na) != isFinal(b, q, nb)) {
+                return witness(from, via, head);
+            }
+            for (int c = 1; c < pairCount; c++) {
+                int p2 = (p == na) ? na : orDead(a.transition(p, classA[c]), na);
+                int q2 = (q == nb) ? nb : orDead(b.transition(q, classB[c]), nb);
+                if (union(parent, size, p2, offset + q2)) {
+                    queueA[tail] = p2;
+                    queueB[tail] = q2;
+                    from[tail] = head;
+                    via[tail++] = symbols[c];
+                }
+            }
+            head++;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a DFA accepts no string at all.
+     * @param dfa the DFA to check
+     * @return true if no final state is reachable from the start state
+     */
+    static boolean isEmpty(CompiledDFA dfa) {
+        if (dfa.startState() == CompiledDFA.DEAD) return true;
+        boolean[] seen = new boolean[dfa.stateCount()];
+        int[] queue = new int[dfa.stateCount()];
+        int head = 0;
+        int tail = 0;
+        seen[dfa.startState()] = true;
+        queue[tail++] = dfa.startState();
+        while (head < tail) {
+            int p = queue[head++];
+            if (dfa.isFinal(p)) return false;
+            for (int c = 1; c < dfa.classCount(); c++) {
+                int t = dfa.transition(p, c);
+                if (t != CompiledDFA.DEAD && !seen[t]) {
+                    seen[t] = true;
+                    queue[tail++] = t;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a DFA accepts every string over its alphabet.
+     * @param dfa the DFA to check
+     * @return true if every reachable state is final and has a transition on every symbol
+     */
+    static boolean isUniversal(CompiledDFA dfa) {
+        if (dfa.startState() == CompiledDFA.DEAD) return false;
+        boolean[] seen = new boolean[dfa.stateCount()];
+        int[] queue = new int[dfa.stateCount()];
+        int head = 0;
+        int tail = 0;
+        seen[dfa.startState()] = true;
+        queue[tail++] = dfa.startState();
+        while (head < tail) {
+            int p = queue[head++];
+            if (!dfa.isFinal(p)) return false;
+            for (int j = 0; j < dfa.symbolCount(); j++) {
+                int t = dfa.transition(p, dfa.symbolClassAt(j));
+                if (t == CompiledDFA.DEAD) return false;
+                if (!seen[t]) {
+                    seen[t] = true;
+                    queue[tail++] = t;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int orDead(int state, int dead) {
+        return (state == CompiledDFA.DEAD) ? dead : state;
+    }
+
+    private static boolean isFinal(CompiledDFA dfa, int state, int dead) {
+        return state != dead && dfa.isFinal(state);
+    }
+
+    /**
+     * Merges the sets of x and y, hanging the smaller set under the larger.
+     * @return false if they were already in the same set
+     */
+    private static boolean union(int[] parent, int[] size, int x, int y) {
+        int rx = find(parent, x);
+        int ry = find(parent, y);
+        if (rx == ry) return false;
+        if (size[rx] > size[ry]) {
+            int t = rx;
+            rx = ry;
+            ry = t;
+        }
+        parent[rx] = ry;
+        size[ry] += size[rx];
+        return true;
+    }
+
+    // iterative find with path halving
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static String witness(int[] from, char[] via, int at) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = at; from[i] >= 0; i = from[i]) {
+            sb.append(via[i]);
+        }
+        return sb.reverse().toString();
+    }
+}
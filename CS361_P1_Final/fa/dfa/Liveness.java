@@ -0,0 +1,126 @@
+package fa.dfa;
+
+/**
+ * Classifies the states of a class transition table by what any further input can lead to.
+ *
+ * A state is dead if no final state can be reached from it, so every run through it is rejected.
+ * A state is an accept sink if it is final and every symbol leads to another accept sink, so
+ * every run through it is accepted as long as the rest of the input is in Sigma. Both are found
+ * with one backward breadth-first search over a predecessor list, in O(|Q| * |classes|) time.
+ * Column 0 is the all-DEAD class of chars outside Sigma and is left out of the sink check; a caller
+ * whose Sigma has symbols in class 0 has no accept sinks at all.
+ */
+final class Liveness {
+    private final int n;
+    private final int width;
+    private final int[] delta;
+    // predecessors in CSR form: the states with a transition into t are preds[predStart[t] .. predStart[t + 1])
+    private final int[] predStart;
+    private final int[] preds;
+
+    /**
+     * @param delta the flat class transition table, indexed by state * width + classId
+     * @param n the number of states
+     * @param width the number of classes, including class 0
+     */
+    Liveness(int[] delta, int n, int width) {
+        this.n = n;
+        this.width = width;
+        this.delta = delta;
+        predStart = new int[n + 1];
+        for (int t : delta) {
+            if (t != CompiledDFA.DEAD) predStart[t + 1]++;
+        }
+        for (int q = 0; q < n; q++) {
+            predStart[q + 1] += predStart[q];
+        }
+        preds = new int[predStart[n]];
+        int[] fill = new int[n];
+        for (int p = 0; p < n; p++) {
+            for (int j = 0; j < width; j++) {
+                int t = delta[p * width + j];
+                if (t != CompiledDFA.DEAD) preds[predStart[t] + fill[t]++] = p;
+            }
+        }
+    }
+
+    /**
+     * Redirects every transition into a dead state to DEAD, so runs die as early as possible.
+     * @param finals final flags, indexed by state id
+     * @return the number of dead states
+     */
+    int pruneDead(boolean[] finals) {
+        boolean[] live = live(finals);
+        int dead = 0;
+        for (int q = 0; q < n; q++) {
+            if (!live[q]) dead++;
+        }
+        if (dead == 0) return 0;
+        for (int i = 0; i < delta.length; i++) {
+            int t = delta[i];
+            if (t != CompiledDFA.DEAD && !live[t]) delta[i] = CompiledDFA.DEAD;
+        }
+        return dead;
+    }
+
+    /**
+     * Finds the states from which a final state can be reached.
+     * @param finals final flags, indexed by state id
+     * @return the live flags, indexed by state id
+     */
+    boolean[] live(boolean[] finals) {
+        boolean[] live = new boolean[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int q = 0; q < n; q++) {
+            if (finals[q]) {
+                live[q] = true;
+                queue[tail++] = q;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int t = queue[head];
+            for (int i = predStart[t]; i < predStart[t + 1]; i++) {
+                int p = preds[i];
+                if (!live[p]) {
+                    live[p] = true;
+                    queue[tail++] = p;
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Finds the accept sinks, the largest set of final states closed under every class but 0.
+     * Reads the table as it is now, so after pruneDead a transition into a dead state counts as missing.
+     * The predecessor lists still hold the pruned transitions, but those only lead into dead states,
+     * which are never sinks, from states that lost a transition and so are not sinks either.
+     * @param finals final flags, indexed by state id
+     * @return the accept sink flags, indexed by state id, or null if there are none
+     */
+    boolean[] acceptSinks(boolean[] finals) {
+        boolean[] sink = new boolean[n];
+        int[] queue = new int[n];
+        int tail = 0;
+        // start from the final states with a transition on every class, then drop predecessors of non-sinks
+        for (int q = 0; q < n; q++) {
+            sink[q] = finals[q];
+            for (int j = 1; j < width && sink[q]; j++) {
+                sink[q] = delta[q * width + j] != CompiledDFA.DEAD;
+            }
+            if (!sink[q]) queue[tail++] = q;
+        }
+        for (int head = 0; head < tail; head++) {
+            int t = queue[head];
+            for (int i = predStart[t]; i < predStart[t + 1]; i++) {
+                int p = preds[i];
+                if (sink[p]) {
+                    sink[p] = false;
+                    queue[tail++] = p;
+                }
+            }
+        }
+        return (tail == n) ? null : sink;
+    }
+}
@@ -0,0 +1,198 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A DFA matched directly off a memory-mapped file written by {@link CompiledDFA#writeTo(Path)}.
+ *
+ * Loading only maps the file, checks the header and builds the small char to class lookup,
+ * so it takes about the same time for any number of states. The transition table and the final
+ * state bitmap are read straight from the mapping and state names are decoded only when asked for.
+ * The whole file is mapped at once, so it must be smaller than 2GB.
+ *
+ * Instances are immutable and can be shared between threads. The table is trusted as written:
+ * a file modified after it was written may give wrong answers or throw
+ * IndexOutOfBoundsException while matching.
+ */
+public final class MappedDFA {
+    /** First int of the file, "FADF" in ASCII */
+    static final int MAGIC = 0x46414446;
+    /** Format version written by this code */
+    static final int VERSION = 1;
+    /** Bytes before Sigma: magic, version, |Q|, |Sigma|, class count, start */
+    private static final int HEADER_SIZE = 24;
+
+    private final int stateCount;
+    private final char[] symbols;
+    private final int classCount;
+    private final int start;
+    private final SymbolClasses classes;
+    /** The transition table, a view of the mapping */
+    private final IntBuffer delta;
+    /** The final state bitmap, a view of the mapping */
+    private final IntBuffer finals;
+    /** The name offsets, a view of the mapping */
+    private final IntBuffer nameOffsets;
+    /** The mapping, for reading name bytes */
+    private final ByteBuffer data;
+    /** Position of the name blob in the mapping */
+    private final int namesAt;
+
+    private MappedDFA(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("not a DFA file");
+        }
+        int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("unsupported DFA file version " + version);
+        }
+        stateCount = data.getInt(8);
+        int symbolCount = data.getInt(12);
+        classCount = data.getInt(16);
+        start = data.getInt(20);
+        if (stateCount < 0 || symbolCount < 0 || classCount < 1 || start < CompiledDFA.DEAD || start >= stateCount) {
+            throw new IOException("corrupt DFA file header");
+        }
+
+        long at = HEADER_SIZE;
+        long classesAt = at + 2L * (symbolCount + (symbolCount & 1));
+        long deltaAt = classesAt + 4L * symbolCount;
+        long finalsAt = deltaAt + 4L * stateCount * classCount;
+        long offsetsAt = finalsAt + 4L * ((stateCount + 31) >>> 5);
+        long blobAt = offsetsAt + 4L * (stateCount + 1);
+        if (blobAt > data.capacity() || blobAt + data.getInt((int) blobAt - 4) != data.capacity()) {
+            throw new IOException("truncated DFA file");
+        }
+
+        symbols = new char[symbolCount];
+        int[] symbolClass = new int[symbolCount];
+        for (int j = 0; j < symbolCount; j++) {
+            symbols[j] = data.getChar((int) at + 2 * j);
+            symbolClass[j] = data.getInt((int) classesAt + 4 * j);
+            if (symbolClass[j] < 0 || symbolClass[j] >= classCount) {
+                throw new IOException("corrupt DFA file symbol table");
+            }
+        }
+        classes = SymbolClasses.build(symbols, symbolClass, classCount);
+        delta = slice(data, deltaAt, finalsAt).asIntBuffer();
+        finals = slice(data, finalsAt, offsetsAt).asIntBuffer();
+        nameOffsets = slice(data, offsetsAt, blobAt).asIntBuffer();
+        namesAt = (int) blobAt;
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, long from, long to) {
+        return data.slice((int) from, (int) (to - from));
+    }
+
+    /**
+     * Maps a DFA file for matching.
+     * @param file a file written by {@link CompiledDFA#writeTo(Path)} or {@link DFA#writeTo(Path)}
+     * @return the mapped DFA
+     * @throws IOException if the file cannot be read, is not a DFA file or is 2GB or larger
+     */
+    public static MappedDFA load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("DFA file too large to map: " + size + " bytes");
+            }
+            return new MappedDFA(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Checks if a string is accepted by the DFA
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean accepts(CharSequence s) {
+        return isFinal(run(start, s, 0, s.length()));
+    }
+
+    /**
+     * Runs the DFA over part of a character sequence.
+     * @param state the state to start from, or DEAD
+     * @param input the input characters
+     * @param off index of the first char
+     * @param len number of chars to read
+     * @return the state reached, or DEAD as soon as the run dies
+     */
+    public int run(int state, CharSequence input, int off, int len) {
+        if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        final IntBuffer delta = this.delta;
+        final SymbolClasses classes = this.classes;
+        final int width = classCount;
+        for (int i = off, end = off + len; i < end; i++) {
+            state = delta.get(state * width + classes.classOf(input.charAt(i)));
+            if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        }
+        return state;
+    }
+
+    /**
+     * Follows a single transition.
+     * @param state the current state id, or DEAD
+     * @param symbol the input char
+     * @return the next state id, or DEAD if there is no such transition
+     */
+    public int step(int state, char symbol) {
+        if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        return delta.get(state * classCount + classes.classOf(symbol));
+    }
+
+    /**
+     * @return the start state id, or DEAD if the DFA had no start state
+     */
+    public int startState() {
+        return start;
+    }
+
+    /**
+     * @param state a state id
+     * @return true if the state is final; DEAD is never final
+     */
+    public boolean isFinal(int state) {
+        return state != CompiledDFA.DEAD && (finals.get(state >>> 5) & (1 << (state & 31))) != 0;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return the size of Sigma
+     */
+    public int symbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * @param index a symbol index
+     * @return the symbol with that index
+     */
+    public char symbolAt(int index) {
+        return symbols[index];
+    }
+
+    /**
+     * @param state a state id
+     * @return the label the state had in the DFA, decoded from the file
+     */
+    public String stateName(int state) {
+        int from = nameOffsets.get(state);
+        int to = nameOffsets.get(state + 1);
+        byte[] bytes = new byte[to - from];
+        data.get(namesAt + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
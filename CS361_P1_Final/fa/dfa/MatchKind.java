@@ -0,0 +1,14 @@
+package fa.dfa;
+
+/**
+ * How {@link DFASearcher} picks one match among the spans a DFA accepts.
+ */
+public enum MatchKind {
+    /** The match that starts first, and among those the longest one, as in POSIX regular expressions */
+    LEFTMOST_LONGEST,
+    /**
+     * The match that starts first, and among those the one that ends first. A DFA has no alternation
+     * order to prefer one match over another, so the first match to complete is the shortest.
+     */
+    LEFTMOST_FIRST
+}
@@ -0,0 +1,272 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Hopcroft's partition-refinement minimization over a {@link CompiledDFA}.
+ *
+ * Missing transitions are treated as going to an implicit dead state, so states from which
+ * no final state can be reached end up in the dead state's block and are dropped from the result.
+ * The refinement runs in O(n * |classes| * log n) time using flat int arrays only:
+ * no recursion and no objects per state or per transition.
+ */
+final class Minimizer {
+    /** Number of states, plus one for the implicit dead state */
+    private final int n;
+    /** Number of symbol classes; class 0 always leads to the dead state and is never a splitter */
+    private final int k;
+
+    // partition: elems holds the states grouped by block, block b owns elems[first[b] .. end[b])
+    // and its marked states are gathered at the front, in elems[first[b] .. mid[b])
+    private final int[] elems;
+    private final int[] loc;
+    private final int[] blockOf;
+    private final int[] first;
+    private final int[] end;
+    private final int[] mid;
+    private int blocks;
+
+    // blocks waiting to be used as splitters
+    private final int[] work;
+    private final boolean[] inWork;
+    private int workSize;
+
+    // blocks with at least one marked state during the current splitter symbol
+    private final int[] touched;
+    private int touchedSize;
+
+    // predecessor lists in CSR form: the sources of transitions into t on class a
+    // are preds[predStart[t * k + a] .. predStart[t * k + a + 1])
+    private final int[] predStart;
+    private final int[] preds;
+
+    private Minimizer(CompiledDFA dfa, boolean[] reachable) {
+        int states = dfa.stateCount();
+        this.n = states + 1;
+        this.k = dfa.classCount();
+        final int dead = states;
+
+        predStart = new int[n * k + 1];
+        for (int p = 0; p < states; p++) {
+            if (!reachable[p]) continue;
+            for (int a = 1; a < k; a++) {
+                predStart[slot(dfa.transition(p, a), dead, a) + 1]++;
+            }
+        }
+        // the dead state loops on every class, so it is its own predecessor; without that a reachable
+        // trap state, which loops the same way, would be split off the dead block
+        for (int a = 1; a < k; a++) {
+            predStart[dead * k + a + 1]++;
+        }
+        for (int i = 0; i < n * k; i++) {
+            predStart[i + 1] += predStart[i];
+        }
+        preds = new int[predStart[n * k]];
+        int[] fill = new int[n * k];
+        for (int p = 0; p < states; p++) {
+            if (!reachable[p]) continue;
+            for (int a = 1; a < k; a++) {
+                int s = slot(dfa.transition(p, a), dead, a);
+                preds[predStart[s] + fill[s]++] = p;
+            }
+        }
+        for (int a = 1; a < k; a++) {
+            int s = dead * k + a;
+            preds[predStart[s] + fill[s]++] = dead;
+        }
+
+        elems = new int[n];
+        loc = new int[n];
+        blockOf = new int[n];
+        first = new int[n];
+        end = new int[n];
+        mid = new int[n];
+        work = new int[n];
+        inWork = new boolean[n];
+        touched = new int[n];
+    }
+
+    private int slot(int target, int dead, int a) {
+        return ((target == CompiledDFA.DEAD) ? dead : target) * k + a;
+    }
+
+    /**
+     * Builds the minimal DFA equivalent to the given compiled DFA.
+     *
+     * Each state of the result is named after the earliest added state of its block and
+     * states keep the relative order of those names, so the result is deterministic.
+     *
+     * @param dfa the compiled DFA to minimize
+     * @return a new minimal DFA with the same Sigma
+     */
+    static DFA minimize(CompiledDFA dfa) {
+        DFA result = new DFA();
+        for (int j = 0; j < dfa.symbolCount(); j++) {
+            result.addSigma(dfa.symbolAt(j));
+        }
+        int start = dfa.startState();
+        if (start == CompiledDFA.DEAD) return result;
+
+        boolean[] reachable = reachable(dfa, start);
+        Minimizer m = new Minimizer(dfa, reachable);
+        m.refine(dfa, reachable);
+
+        final int dead = dfa.stateCount();
+        int deadBlock = m.blockOf[dead];
+        if (m.blockOf[start] == deadBlock) {
+            // the language is empty: keep just a non-final start state
+            result.addState(dfa.stateName(start));
+            result.setStart(dfa.stateName(start));
+            return result;
+        }
+
+        // name every block after its lowest state id, which is also the order blocks are emitted in
+        int[] representative = new int[m.blocks];
+        Arrays.fill(representative, -1);
+        for (int q = 0; q < dead; q++) {
+            if (!reachable[q]) continue;
+            int b = m.blockOf[q];
+            if (b != deadBlock && representative[b] < 0) {
+                representative[b] = q;
+                result.addState(dfa.stateName(q));
+            }
+        }
+        result.setStart(dfa.stateName(representative[m.blockOf[start]]));
+        for (int q = 0; q < dead; q++) {
+            if (reachable[q] && representative[m.blockOf[q]] == q) {
+                if (dfa.isFinal(q)) result.setFinal(dfa.stateName(q));
+                for (int j = 0; j < dfa.symbolCount(); j++) {
+                    int t = dfa.transition(q, dfa.symbolClassAt(j));
+                    if (t == CompiledDFA.DEAD || m.blockOf[t] == deadBlock) continue;
+                    result.addTransition(dfa.stateName(q), dfa.stateName(representative[m.blockOf[t]]), dfa.symbolAt(j));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks the states reachable from the start state with an iterative breadth-first search.
+     */
+    private static boolean[] reachable(CompiledDFA dfa, int start) {
+        boolean[] seen = new boolean[dfa.stateCount()];
+        int[] queue = new int[dfa.stateCount()];
+        int head = 0;
+        int tail = 0;
+        seen[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+            int p = queue[head++];
+            for (int a = 1; a < dfa.classCount(); a++) {
+                int t = dfa.transition(p, a);
+                if (t != CompiledDFA.DEAD && !seen[t]) {
+                    seen[t] = true;
+                    queue[tail++] = t;
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Splits the initial final / non-final partition of the reachable states
+     * (plus the dead state) until it is stable under every symbol class.
+     */
+    private void refine(CompiledDFA dfa, boolean[] reachable) {
+        final int dead = n - 1;
+        int size = 0;
+        // final states first, then the rest
+        for (int q = 0; q < dead; q++) {
+            if (reachable[q] && dfa.isFinal(q)) size = place(q, size, 0);
+        }
+        int finalCount = size;
+        for (int q = 0; q < dead; q++) {
+            if (reachable[q] && !dfa.isFinal(q)) size = place(q, size, 1);
+        }
+        size = place(dead, size, 1);
+
+        if (finalCount == 0) {
+            // every state is non-final, so they are all equivalent to the dead state
+            for (int i = 0; i < size; i++) blockOf[elems[i]] = 0;
+            first[0] = 0;
+            end[0] = mid[0] = size;
+            blocks = 1;
+            return;
+        }
+        first[0] = 0;
+        end[0] = finalCount;
+        mid[0] = 0;
+        first[1] = finalCount;
+        end[1] = size;
+        mid[1] = finalCount;
+        blocks = 2;
+        push(finalCount <= size - finalCount ? 0 : 1);
+
+        int[] splitter = new int[n];
+        while (workSize > 0) {
+            int s = work[--workSize];
+            inWork[s] = false;
+            // copy the splitter, since it may itself be split while its symbols are processed
+            int count = end[s] - first[s];
+            System.arraycopy(elems, first[s], splitter, 0, count);
+            for (int a = 1; a < k; a++) {
+                for (int i = 0; i < count; i++) {
+                    int slot = splitter[i] * k + a;
+                    for (int j = predStart[slot]; j < predStart[slot + 1]; j++) {
+                        mark(preds[j]);
+                    }
+                }
+                split();
+            }
+        }
+    }
+
+    private int place(int q, int at, int block) {
+        elems[at] = q;
+        loc[q] = at;
+        blockOf[q] = block;
+        return at + 1;
+    }
+
+    private void push(int block) {
+        inWork[block] = true;
+        work[workSize++] = block;
+    }
+
+    private void mark(int p) {
+        int b = blockOf[p];
+        int i = loc[p];
+        if (i < mid[b]) return;
+        if (mid[b] == first[b]) touched[touchedSize++] = b;
+        int j = mid[b]++;
+        int other = elems[j];
+        elems[j] = p;
+        loc[p] = j;
+        elems[i] = other;
+        loc[other] = i;
+    }
+
+    private void split() {
+        while (touchedSize > 0) {
+            int b = touched[--touchedSize];
+            if (mid[b] == end[b]) {
+                mid[b] = first[b];
+                continue;
+            }
+            // the marked front part becomes a new block
+            int nb = blocks++;
+            first[nb] = first[b];
+            end[nb] = mid[b];
+            mid[nb] = first[nb];
+            first[b] = mid[b];
+            for (int i = first[nb]; i < end[nb]; i++) {
+                blockOf[elems[i]] = nb;
+            }
+            if (inWork[b]) {
+                push(nb);
+            } else {
+                push((end[nb] - first[nb]) <= (end[b] - first[b]) ? nb : b);
+            }
+        }
+    }
+}
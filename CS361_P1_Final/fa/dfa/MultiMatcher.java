@@ -0,0 +1,137 @@
+package fa.dfa;
+
+import java.util.BitSet;
+
+/**
+ * A resumable cursor that advances every DFA of a {@link DFASet} together.
+ *
+ * The current states are kept in one int array, and the DFAs still alive are kept at the front
+ * of a second one. A DFA is moved out of that front part as soon as its run dies, so later chars
+ * skip it, and scanning stops once no DFA is alive. A matcher is not thread-safe.
+ */
+public final class MultiMatcher {
+    private final DFASet set;
+    /** Current state of each DFA, or CompiledDFA.DEAD */
+    private final int[] states;
+    /** The DFAs still alive are active[0 .. activeCount) */
+    private final int[] active;
+    private int activeCount;
+
+    /**
+     * Creates a matcher with every DFA at its start state.
+     * @param set the DFAs to match
+     */
+    public MultiMatcher(DFASet set) {
+        this.set = set;
+        this.states = new int[set.size()];
+        this.active = new int[set.size()];
+        reset();
+    }
+
+    /**
+     * Consumes one char in every DFA still alive.
+     * @param c the next input char
+     * @return false if every DFA is dead
+     */
+    public boolean feed(char c) {
+        step(c);
+        return activeCount > 0;
+    }
+
+    /**
+     * Consumes part of a char array.
+     * @param input the input chars
+     * @param off index of the first char
+     * @param len number of chars to consume
+     * @return false if every DFA is dead
+     */
+    public boolean feed(char[] input, int off, int len) {
+        for (int p = off, end = off + len; p < end && activeCount > 0; p++) {
+            step(input[p]);
+        }
+        return activeCount > 0;
+    }
+
+    /**
+     * Consumes a character sequence.
+     * @param input the input characters
+     * @return false if every DFA is dead
+     */
+    public boolean feed(CharSequence input) {
+        for (int p = 0, end = input.length(); p < end && activeCount > 0; p++) {
+            step(input.charAt(p));
+        }
+        return activeCount > 0;
+    }
+
+    private void step(char c) {
+        final int[] states = this.states;
+        final int[] active = this.active;
+        final int[][] deltas = set.deltas;
+        final int[] widths = set.widths;
+        final int[] memberClasses = set.memberClasses;
+        final int base = set.classes.classOf(c) * states.length;
+        int a = 0;
+        while (a < activeCount) {
+            int i = active[a];
+            int next = deltas[i][states[i] * widths[i] + memberClasses[base + i]];
+            states[i] = next;
+            if (next == CompiledDFA.DEAD) {
+                // swap the dead DFA out of the active part
+                active[a] = active[--activeCount];
+                active[activeCount] = i;
+            } else {
+                a++;
+            }
+        }
+    }
+
+    /**
+     * @return the positions in the set of the DFAs that accept the input consumed so far
+     */
+    public BitSet accepted() {
+        BitSet result = new BitSet(states.length);
+        for (int a = 0; a < activeCount; a++) {
+            int i = active[a];
+            if (set.get(i).isFinal(states[i])) result.set(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of DFAs whose run is still alive
+     */
+    public int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return true if no DFA can accept any continuation of the input consumed so far
+     */
+    public boolean isDead() {
+        return activeCount == 0;
+    }
+
+    /**
+     * Forgets all consumed input and returns every DFA to its start state.
+     */
+    public void reset() {
+        activeCount = 0;
+        int dead = states.length;
+        for (int i = 0; i < states.length; i++) {
+            states[i] = set.get(i).startState();
+            if (states[i] == CompiledDFA.DEAD) {
+                active[--dead] = i;
+            } else {
+                active[activeCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * @return the set this matcher walks
+     */
+    public DFASet getSet() {
+        return set;
+    }
+}
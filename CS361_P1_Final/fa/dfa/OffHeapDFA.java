@@ -0,0 +1,310 @@
+package fa.dfa;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+
+/**
+ * A {@link CompiledDFA} whose transition table lives outside the Java heap, for automata
+ * too large to keep on it comfortably.
+ *
+ * The table is stored in direct buffers of at most 1GB each, holding whole rows, and each
+ * entry is 1, 2 or 4 bytes depending on the number of states: up to 255 states fit in a byte
+ * and up to 65535 in two, with the all-ones value marking a missing transition. Matching reads
+ * the buffers in place and allocates nothing.
+ *
+ * The table can be filled straight from a {@link DFA}'s own rows by {@link DFA#freezeOffHeap()}, so no
+ * |Q| x classes array is ever built on the heap and there is no limit on |Q| times the number of classes.
+ *
+ * The memory is freed by {@link #close()} instead of waiting for the garbage collector.
+ * Any number of threads can match on an instance, but close is not synchronized with them:
+ * it frees the memory at once, and a match still running on another thread may then read
+ * freed memory and crash the JVM. Close only after every match has returned, for example
+ * after joining the threads that match or under a lock they also hold. A match that starts
+ * after close throws IllegalStateException.
+ */
+public final class OffHeapDFA implements AutoCloseable {
+    /** Largest number of bytes in one buffer */
+    static final int MAX_PAGE_BYTES = 1 << 30;
+
+    private final String[] stateNames;
+    private final SymbolClasses classes;
+    private final int classCount;
+    private final int start;
+    /** Final states as a bitmap, indexed by state id */
+    private final long[] finals;
+    /** Bytes per table entry: 1, 2 or 4 */
+    private final int idBytes;
+    /** The stored value of a missing transition */
+    private final int dead;
+    /** Pages of rows; state q is row (q & pageMask) of pages[q >>> pageShift] */
+    private final ByteBuffer[] pages;
+    /** Set by close, before the pages are freed */
+    private volatile boolean closed;
+    private final int pageShift;
+    private final int pageMask;
+
+    /**
+     * Copies the transition table of a compiled DFA into off-heap memory.
+     * @param dfa the compiled DFA
+     */
+    OffHeapDFA(CompiledDFA dfa) {
+        this(dfa.stateNames(), dfa.symbolClasses(), dfa.classCount(), dfa.startState(), dfa::isFinal, dfa::transition);
+    }
+
+    /**
+     * Fills the off-heap table from the rows of a DFA's transition table, one class at a time.
+     * @param table the states and transitions
+     * @param classes the class of each symbol
+     * @param columnClass the class of each column of the table, as computed by {@link SymbolClasses#refine}
+     * @param classCount the number of classes, including the all-DEAD class 0
+     */
+    OffHeapDFA(TransitionTable table, SymbolClasses classes, int[] columnClass, int classCount) {
+        this(Arrays.copyOf(table.names, table.stateCount), classes, classCount, table.start, table.finals::get,
+                representativeTargets(table, columnClass, classCount));
+    }
+
+    // the target of a state on a class, read from one column of the class
+    private static IntBinaryOperator representativeTargets(TransitionTable table, int[] columnClass, int classCount) {
+        int[] representative = table.representatives(columnClass, classCount);
+        return (q, k) -> (k == 0) ? CompiledDFA.DEAD : table.target(q, representative[k]);
+    }
+
+    /**
+     * @param stateNames state names by id
+     * @param classes the class of each symbol
+     * @param classCount the number of classes, including class 0
+     * @param start the start state id, or DEAD
+     * @param isFinal whether a state id is final
+     * @param transition the target of a state id on a class id, or DEAD
+     */
+    private OffHeapDFA(String[] stateNames, SymbolClasses classes, int classCount, int start,
+            IntPredicate isFinal, IntBinaryOperator transition) {
+        final int n = stateNames.length;
+        this.stateNames = stateNames;
+        this.classes = classes;
+        this.classCount = classCount;
+        this.start = start;
+        this.finals = new long[(n + 63) >>> 6];
+        for (int q = 0; q < n; q++) {
+            if (isFinal.test(q)) finals[q >>> 6] |= 1L << q;
+        }
+        if (n < 0xFF) {
+            idBytes = 1;
+            dead = 0xFF;
+        } else if (n < 0xFFFF) {
+            idBytes = 2;
+            dead = 0xFFFF;
+        } else {
+            idBytes = 4;
+            dead = CompiledDFA.DEAD;
+        }
+
+        // a page holds at most MAX_PAGE_BYTES, so offsets within a page fit in an int; the table as a whole may not
+        int rowBytes = classCount * idBytes;
+        pageShift = 31 - Integer.numberOfLeadingZeros(Math.max(1, MAX_PAGE_BYTES / rowBytes));
+        pageMask = (1 << pageShift) - 1;
+        pages = new ByteBuffer[Math.max(1, (int) (((long) n + pageMask) >>> pageShift))];
+        for (int p = 0; p < pages.length; p++) {
+            long first = (long) p << pageShift;
+            int rows = (int) Math.max(0, Math.min(n - first, 1L << pageShift));
+            ByteBuffer page = ByteBuffer.allocateDirect(rows * rowBytes).order(ByteOrder.nativeOrder());
+            for (int r = 0; r < rows; r++) {
+                int q = (int) first + r;
+                for (int c = 0; c < classCount; c++) {
+                    int t = transition.applyAsInt(q, c);
+                    put(page, (r * classCount + c) * idBytes, (t == CompiledDFA.DEAD) ? dead : t);
+                }
+            }
+            pages[p] = page;
+        }
+    }
+
+    private void put(ByteBuffer page, int at, int value) {
+        switch (idBytes) {
+            case 1: page.put(at, (byte) value); break;
+            case 2: page.putShort(at, (short) value); break;
+            default: page.putInt(at, value); break;
+        }
+    }
+
+    /**
+     * Checks if a string is accepted by the DFA
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean accepts(CharSequence s) {
+        return isFinal(run(start, s, 0, s.length()));
+    }
+
+    /**
+     * Runs the DFA over part of a character sequence.
+     * @param state the state to start from, or DEAD
+     * @param input the input characters
+     * @param off index of the first char
+     * @param len number of chars to read
+     * @return the state reached, or DEAD as soon as the run dies
+     */
+    public int run(int state, CharSequence input, int off, int len) {
+        final ByteBuffer[] pages = pages();
+        if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        final SymbolClasses classes = this.classes;
+        final int width = classCount;
+        final int shift = pageShift;
+        final int mask = pageMask;
+        final int end = off + len;
+        // one loop per entry size, so the loop body has no branch on it
+        switch (idBytes) {
+            case 1:
+                for (int i = off; i < end; i++) {
+                    int at = (state & mask) * width + classes.classOf(input.charAt(i));
+                    state = pages[state >>> shift].get(at) & 0xFF;
+                    if (state == 0xFF) return CompiledDFA.DEAD;
+                }
+                return state;
+            case 2:
+                for (int i = off; i < end; i++) {
+                    int at = ((state & mask) * width + classes.classOf(input.charAt(i))) << 1;
+                    state = pages[state >>> shift].getShort(at) & 0xFFFF;
+                    if (state == 0xFFFF) return CompiledDFA.DEAD;
+                }
+                return state;
+            default:
+                for (int i = off; i < end; i++) {
+                    int at = ((state & mask) * width + classes.classOf(input.charAt(i))) << 2;
+                    state = pages[state >>> shift].getInt(at);
+                    if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+                }
+                return state;
+        }
+    }
+
+    /**
+     * Follows a single transition.
+     * @param state the current state id, or DEAD
+     * @param symbol the input char
+     * @return the next state id, or DEAD if there is no such transition
+     */
+    public int step(int state, char symbol) {
+        final ByteBuffer[] pages = pages();
+        if (state == CompiledDFA.DEAD) return CompiledDFA.DEAD;
+        ByteBuffer page = pages[state >>> pageShift];
+        int at = ((state & pageMask) * classCount + classes.classOf(symbol)) * idBytes;
+        int t;
+        switch (idBytes) {
+            case 1: t = page.get(at) & 0xFF; break;
+            case 2: t = page.getShort(at) & 0xFFFF; break;
+            default: t = page.getInt(at); break;
+        }
+        return (t == dead) ? CompiledDFA.DEAD : t;
+    }
+
+    /**
+     * @return the start state id, or DEAD if the DFA had no start state
+     */
+    public int startState() {
+        return start;
+    }
+
+    /**
+     * @param state a state id
+     * @return true if the state is final; DEAD is never final
+     */
+    public boolean isFinal(int state) {
+        return state != CompiledDFA.DEAD && (finals[state >>> 6] & (1L << state)) != 0;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return stateNames.length;
+    }
+
+    /**
+     * @param state a state id
+     * @return the label the state had in the DFA
+     */
+    public String stateName(int state) {
+        return stateNames[state];
+    }
+
+    /**
+     * @return the number of bytes each transition takes: 1, 2 or 4
+     */
+    public int bytesPerTransition() {
+        return idBytes;
+    }
+
+    /**
+     * @return the number of off-heap bytes held by the transition table, 0 once closed
+     */
+    public long offHeapBytes() {
+        if (closed) return 0;
+        long total = 0;
+        for (ByteBuffer page : pages) {
+            total += page.capacity();
+        }
+        return total;
+    }
+
+    /**
+     * Frees the off-heap memory right away. Calling it again does nothing.
+     * It must not run while another thread is matching on this DFA, see the class comment.
+     * If the JDK does not allow freeing direct buffers explicitly, they are left to the garbage collector.
+     */
+    @Override
+    public void close() {
+        synchronized (pages) {
+            if (closed) return;
+            closed = true;
+        }
+        for (ByteBuffer page : pages) {
+            Cleaner.free(page);
+        }
+    }
+
+    private ByteBuffer[] pages() {
+        if (closed) throw new IllegalStateException("off-heap DFA is closed");
+        return pages;
+    }
+
+    /**
+     * Frees direct buffers through sun.misc.Unsafe.invokeCleaner, looked up once by reflection.
+     */
+    private static final class Cleaner {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // not available on this JDK: buffers are freed by the garbage collector instead
+                unsafe = null;
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void free(ByteBuffer buffer) {
+            if (INVOKE_CLEANER == null || buffer.capacity() == 0) return;
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException e) {
+                // leave it to the garbage collector
+            }
+        }
+    }
+}
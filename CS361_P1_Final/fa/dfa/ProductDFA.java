@@ -0,0 +1,457 @@
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A lazily built product of several DFAs, combined by intersection, union, difference
+ * or symmetric difference, as returned by {@link DFA#intersect(DFA)} and friends.
+ *
+ * A product state is the tuple of the operands' current states. Tuples are only created when
+ * input actually reaches them, and their transitions are memoized in a flat table. Once more than
+ * {@link #getCacheLimit()} tuples are cached the whole cache is flushed and rebuilt on demand,
+ * so memory stays bounded no matter how large the full product would be.
+ * Products can be combined further, and {@link #materialize()} builds the reachable part
+ * of the product as a plain {@link DFA}. Operands are read on the symbols of Sigma only, so a DFA
+ * with code point range transitions is rejected with an UnsupportedOperationException.
+ *
+ * A ProductDFA caches as it matches and is not thread-safe; materialize it and freeze the
+ * result to share it across threads.
+ */
+public final class ProductDFA {
+    /** Default maximum number of cached product states */
+    public static final int DEFAULT_CACHE_LIMIT = 10000;
+    /** Marks a transition that has not been computed yet */
+    private static final int UNKNOWN = -2;
+
+    /** How the operands' acceptance is combined */
+    private enum Op { LEAF, AND, OR, DIFFERENCE, XOR }
+
+    /**
+     * A node of the acceptance formula over the operands.
+     */
+    private static final class Node {
+        final Op op;
+        final int leaf;
+        final Node left;
+        final Node right;
+
+        Node(int leaf) {
+            this.op = Op.LEAF;
+            this.leaf = leaf;
+            this.left = null;
+            this.right = null;
+        }
+
+        Node(Op op, Node left, Node right) {
+            this.op = op;
+            this.leaf = -1;
+            this.left = left;
+            this.right = right;
+        }
+
+        // the same formula with every operand index moved up by offset
+        Node shift(int offset) {
+            if (op == Op.LEAF) return new Node(leaf + offset);
+            return new Node(op, left.shift(offset), right.shift(offset));
+        }
+
+        boolean accepts(CompiledDFA[] leaves, int[] tuples, int base) {
+            switch (op) {
+                case LEAF: return leaves[leaf].isFinal(tuples[base + leaf]);
+                case AND: return left.accepts(leaves, tuples, base) && right.accepts(leaves, tuples, base);
+                case OR: return left.accepts(leaves, tuples, base) || right.accepts(leaves, tuples, base);
+                case DIFFERENCE: return left.accepts(leaves, tuples, base) && !right.accepts(leaves, tuples, base);
+                default: return left.accepts(leaves, tuples, base) != right.accepts(leaves, tuples, base);
+            }
+        }
+
+        // false only if no continuation can be accepted, judging by which operands are dead
+        boolean canAccept(int[] tuples, int base) {
+            switch (op) {
+                case LEAF: return tuples[base + leaf] != CompiledDFA.DEAD;
+                case AND: return left.canAccept(tuples, base) && right.canAccept(tuples, base);
+                case DIFFERENCE: return left.canAccept(tuples, base);
+                default: return left.canAccept(tuples, base) || right.canAccept(tuples, base);
+            }
+        }
+    }
+
+    /**
+     * An operand tuple compared by content, used to find already cached product states.
+     */
+    private static final class Tuple {
+        private final int[] states;
+        private final int hash;
+
+        Tuple(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Tuple && Arrays.equals(states, ((Tuple) o).states);
+        }
+    }
+
+    /** The operands */
+    private final CompiledDFA[] leaves;
+    /** Acceptance formula over the operands */
+    private final Node formula;
+    /** Union of the operands' alphabets, in first-seen order */
+    private final char[] symbols;
+    /** Maps chars to product symbol classes; class 0 rejects in every operand */
+    private final SymbolClasses classes;
+    /** For each product class, the class it has in each operand, indexed by cls * leaves.length + leaf */
+    private final int[] leafClasses;
+    /** Number of product symbol classes */
+    private final int classCount;
+
+    // the cache: tuple of each product state, its acceptance, its memoized transitions and the tuple index
+    private int cacheLimit = DEFAULT_CACHE_LIMIT;
+    private int[] tuples;
+    private boolean[] finals;
+    private int[] transitions;
+    private int size;
+    private final Map<Tuple, Integer> ids = new HashMap<>();
+    private int start;
+    private int flushes;
+
+    private ProductDFA(CompiledDFA[] leaves, Node formula) {
+        this.leaves = leaves;
+        this.formula = formula;
+
+        Set<Character> alphabet = new LinkedHashSet<>();
+        for (CompiledDFA leaf : leaves) {
+            for (int j = 0; j < leaf.symbolCount(); j++) {
+                alphabet.add(leaf.symbolAt(j));
+            }
+        }
+        symbols = new char[alphabet.size()];
+        int n = 0;
+        for (char c : alphabet) {
+            symbols[n++] = c;
+        }
+
+        // symbols get the same product class when they have the same class in every operand;
+        // storing class - 1 makes "class 0 in every operand" the all-DEAD column that becomes class 0
+        final int k = leaves.length;
+        int[] columns = new int[k * symbols.length];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < symbols.length; j++) {
+                columns[i * symbols.length + j] = leaves[i].classOf(symbols[j]) - 1;
+            }
+        }
+        int[] symbolClass = new int[symbols.length];
+        classes = SymbolClasses.compute(symbols, columns, k, symbolClass);
+        classCount = classes.classCount();
+        leafClasses = new int[classCount * k];
+        for (int j = 0; j < symbols.length; j++) {
+            for (int i = 0; i < k; i++) {
+                leafClasses[symbolClass[j] * k + i] = columns[i * symbols.length + j] + 1;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Wraps a single DFA as a product of one operand, to combine it with others.
+     */
+    static ProductDFA of(CompiledDFA dfa) {
+        return new ProductDFA(new CompiledDFA[] { dfa }, new Node(0));
+    }
+
+    /**
+     * Checks if a string is accepted by the product
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    public boolean accepts(CharSequence s) {
+        int state = start;
+        for (int i = 0, n = s.length(); i < n && state != CompiledDFA.DEAD; i++) {
+            int cls = classes.classOf(s.charAt(i));
+            int next = transitions[state * classCount + cls];
+            state = (next == UNKNOWN) ? computeTransition(state, cls) : next;
+        }
+        return state != CompiledDFA.DEAD && finals[state];
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by this product and by dfa
+     */
+    public ProductDFA intersect(DFA dfa) {
+        return combine(dfa.freezeWithoutRanges("intersect"), Op.AND);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by this product or by dfa
+     */
+    public ProductDFA union(DFA dfa) {
+        return combine(dfa.freezeWithoutRanges("union"), Op.OR);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by this product but not by dfa
+     */
+    public ProductDFA difference(DFA dfa) {
+        return combine(dfa.freezeWithoutRanges("difference"), Op.DIFFERENCE);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by exactly one of this product and dfa
+     */
+    public ProductDFA symmetricDifference(DFA dfa) {
+        return combine(dfa.freezeWithoutRanges("symmetricDifference"), Op.XOR);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by both products
+     */
+    public ProductDFA intersect(ProductDFA other) {
+        return combine(other, Op.AND);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by either product
+     */
+    public ProductDFA union(ProductDFA other) {
+        return combine(other, Op.OR);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by this product but not by other
+     */
+    public ProductDFA difference(ProductDFA other) {
+        return combine(other, Op.DIFFERENCE);
+    }
+
+    /**
+     * @return a lazy product accepting strings accepted by exactly one of the two products
+     */
+    public ProductDFA symmetricDifference(ProductDFA other) {
+        return combine(other, Op.XOR);
+    }
+
+    /**
+     * Builds the part of the product reachable from its start state as a plain DFA.
+     * States are named after their operand tuples, such as "[a,b]", with "-" for an operand that has rejected.
+     * Within an operand name a backslash escapes backslashes, commas and square brackets, and a state
+     * named "-" is written "\-", so no two tuples share a name.
+     * Tuples from which no string can be accepted are left out, so transitions into them are missing; this
+     * covers tuples whose live operands can never agree, such as two operands of an intersection with
+     * disjoint futures. Only the start tuple is kept regardless, as a non-final state with no transitions.
+     * This does not use or disturb the lazy cache.
+     * @return the materialized product
+     */
+    public DFA materialize() {
+        final int k = leaves.length;
+        final int m = symbols.length;
+        DFA dfa = new DFA();
+        for (char c : symbols) {
+            dfa.addSigma(c);
+        }
+        int[] startTuple = startTuple();
+        if (!formula.canAccept(startTuple, 0)) {
+            dfa.setStart(dfa.newState(name(startTuple, 0)));
+            return dfa;
+        }
+
+        // explore the reachable tuples, in the order they are found, skipping those with every needed operand dead
+        Map<Tuple, Integer> ids = new HashMap<>();
+        List<int[]> found = new ArrayList<>();
+        int[] delta = new int[8 * m];
+        ids.put(new Tuple(startTuple), 0);
+        found.add(startTuple);
+        for (int p = 0; p < found.size(); p++) {
+            int[] from = found.get(p);
+            if ((p + 1) * m > delta.length) delta = Arrays.copyOf(delta, delta.length * 2);
+            for (int j = 0; j < m; j++) {
+                int[] to = new int[k];
+                for (int i = 0; i < k; i++) {
+                    to[i] = leaves[i].step(from[i], symbols[j]);
+                }
+                if (!formula.canAccept(to, 0)) {
+                    delta[p * m + j] = CompiledDFA.DEAD;
+                    continue;
+                }
+                Tuple key = new Tuple(to);
+                Integer toId = ids.get(key);
+                if (toId == null) {
+                    toId = found.size();
+                    ids.put(key, toId);
+                    found.add(to);
+                }
+                delta[p * m + j] = toId;
+            }
+        }
+
+        // then drop the tuples from which no final tuple can be reached
+        final int n = found.size();
+        boolean[] finals = new boolean[n];
+        for (int p = 0; p < n; p++) {
+            finals[p] = formula.accepts(leaves, found.get(p), 0);
+        }
+        boolean[] live = new Liveness(delta, n, m).live(finals);
+        int[] newId = new int[n];
+        for (int p = 0; p < n; p++) {
+            newId[p] = (live[p] || p == 0) ? dfa.newState(name(found.get(p), 0)) : CompiledDFA.DEAD;
+        }
+        dfa.setStart(newId[0]);
+        for (int p = 0; p < n; p++) {
+            if (!live[p]) continue;
+            if (finals[p]) dfa.setFinal(newId[p]);
+            for (int j = 0; j < m; j++) {
+                int t = delta[p * m + j];
+                if (t != CompiledDFA.DEAD && live[t]) dfa.addTransition(newId[p], newId[t], symbols[j]);
+            }
+        }
+        return dfa;
+    }
+
+    /**
+     * Sets how many product states may be cached before the cache is flushed.
+     * @param limit the maximum number of cached product states, at least 2
+     */
+    public void setCacheLimit(int limit) {
+        if (limit < 2) throw new IllegalArgumentException("cache limit must be at least 2: " + limit);
+        cacheLimit = limit;
+        flush();
+    }
+
+    /**
+     * @return the maximum number of cached product states
+     */
+    public int getCacheLimit() {
+        return cacheLimit;
+    }
+
+    /**
+     * @return the number of product states currently cached
+     */
+    public int cachedStateCount() {
+        return size;
+    }
+
+    /**
+     * @return how many times the cache has been flushed because it was full
+     */
+    public int flushCount() {
+        return flushes;
+    }
+
+    private ProductDFA combine(CompiledDFA dfa, Op op) {
+        return combine(of(dfa), op);
+    }
+
+    private ProductDFA combine(ProductDFA other, Op op) {
+        CompiledDFA[] all = Arrays.copyOf(leaves, leaves.length + other.leaves.length);
+        System.arraycopy(other.leaves, 0, all, leaves.length, other.leaves.length);
+        ProductDFA product = new ProductDFA(all, new Node(op, formula, other.formula.shift(leaves.length)));
+        product.cacheLimit = Math.max(cacheLimit, other.cacheLimit);
+        return product;
+    }
+
+    private int[] startTuple() {
+        int[] tuple = new int[leaves.length];
+        for (int i = 0; i < leaves.length; i++) {
+            tuple[i] = leaves[i].startState();
+        }
+        return tuple;
+    }
+
+    private String name(int[] tuple, int base) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < leaves.length; i++) {
+            if (i > 0) sb.append(',');
+            int q = tuple[base + i];
+            if (q == CompiledDFA.DEAD) {
+                sb.append('-');
+            } else {
+                appendEscaped(sb, leaves[i].stateName(q));
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    // appends an operand state name with backslashes, commas and square brackets escaped by a backslash,
+    // and "-" as "\-", so that different tuples never get the same name
+    private static void appendEscaped(StringBuilder sb, String name) {
+        if (name.equals("-")) {
+            sb.append("\\-");
+            return;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\\' || c == ',' || c == '[' || c == ']') sb.append('\\');
+            sb.append(c);
+        }
+    }
+
+    /**
+     * Computes, caches and returns the successor of a cached product state.
+     * The successor's id may belong to a freshly flushed cache.
+     */
+    private int computeTransition(int state, int cls) {
+        final int k = leaves.length;
+        int[] next = new int[k];
+        for (int i = 0; i < k; i++) {
+            next[i] = leaves[i].transition(tuples[state * k + i], leafClasses[cls * k + i]);
+        }
+        if (!formula.canAccept(next, 0)) {
+            transitions[state * classCount + cls] = CompiledDFA.DEAD;
+            return CompiledDFA.DEAD;
+        }
+        Tuple key = new Tuple(next);
+        Integer id = ids.get(key);
+        if (id == null) {
+            if (size == cacheLimit) {
+                flushes++;
+                flush();
+                // the old state ids are gone; nothing more is cached for the state we came from
+                Integer fresh = ids.get(key);
+                return (fresh != null) ? fresh : intern(key);
+            }
+            id = intern(key);
+        }
+        transitions[state * classCount + cls] = id;
+        return id;
+    }
+
+    private void flush() {
+        ids.clear();
+        size = 0;
+        int capacity = Math.min(cacheLimit, 64);
+        tuples = new int[capacity * leaves.length];
+        finals = new boolean[capacity];
+        transitions = new int[capacity * classCount];
+        int[] startTuple = startTuple();
+        start = formula.canAccept(startTuple, 0) ? intern(new Tuple(startTuple)) : CompiledDFA.DEAD;
+    }
+
+    private int intern(Tuple key) {
+        final int k = leaves.length;
+        if (size == finals.length) {
+            int capacity = Math.min(cacheLimit, size * 2);
+            tuples = Arrays.copyOf(tuples, capacity * k);
+            finals = Arrays.copyOf(finals, capacity);
+            transitions = Arrays.copyOf(transitions, capacity * classCount);
+        }
+        int id = size++;
+        System.arraycopy(key.states, 0, tuples, id * k, k);
+        finals[id] = formula.accepts(leaves, tuples, id * k);
+        Arrays.fill(transitions, id * classCount, (id + 1) * classCount, UNKNOWN);
+        ids.put(key, id);
+        return id;
+    }
+}
@@ -0,0 +1,33 @@
+package fa.dfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event recorded by {@link DFAProfiler} for a match that took at least its slow match threshold.
+ * Enable it in a recording with the name fa.dfa.SlowMatch.
+ */
+@Name("fa.dfa.SlowMatch")
+@Label("Slow DFA Match")
+@Category({ "fa", "DFA" })
+@Description("An accepts call on a profiled DFA that took longer than the slow match threshold")
+final class SlowMatchEvent extends Event {
+    @Label("Input Length")
+    @Description("Number of chars matched")
+    long length;
+
+    @Label("Match Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long matchTime;
+
+    @Label("Accepted")
+    boolean accepted;
+
+    @Label("States")
+    @Description("Number of states of the DFA")
+    int states;
+}
@@ -0,0 +1,263 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact char to symbol-class lookup.
+ *
+ * Two symbols share a class when they lead to the same state from every state of the DFA,
+ * so the transition table only needs one column per class instead of one per symbol.
+ * Class 0 is reserved for symbols that reject from every state, including every char that is not in Sigma.
+ *
+ * The lookup is a two-level table over the full char range: the high byte of a char picks a
+ * 256-entry page and the low byte indexes into it. Identical pages are stored once, so an
+ * alphabet that only touches a few blocks of Unicode costs a few pages.
+ */
+final class SymbolClasses {
+    /** Number of chars covered by one page */
+    private static final int PAGE_SIZE = 256;
+
+    /** Offset into pages for each high byte */
+    private final int[] top;
+    /** Concatenated, deduplicated pages of class ids */
+    private final int[] pages;
+    /** Number of distinct classes, including class 0 */
+    private final int classCount;
+
+    private SymbolClasses(int[] top, int[] pages, int classCount) {
+        this.top = top;
+        this.pages = pages;
+        this.classCount = classCount;
+    }
+
+    /**
+     * Looks up the class of a char.
+     * @param c the input char
+     * @return its class id, 0 if it rejects from every state
+     */
+    int classOf(char c) {
+        return pages[top[c >>> 8] + (c & 0xFF)];
+    }
+
+    /**
+     * @return the number of classes, including the rejecting class 0
+     */
+    int classCount() {
+        return classCount;
+    }
+
+    /**
+     * Partitions Sigma into classes of symbols with identical transition columns.
+     *
+     * @param symbols Sigma, indexed by symbol index
+     * @param delta a per-symbol transition table of stateCount rows and symbols.length columns
+     * @param stateCount the number of rows in delta
+     * @param symbolClass receives the class id of each symbol index
+     * @return the lookup table for the computed classes
+     */
+    static SymbolClasses compute(char[] symbols, int[] delta, int stateCount, int[] symbolClass) {
+        return build(symbols, symbolClass, group(delta, stateCount, symbols.length, symbolClass));
+    }
+
+    /**
+     * Numbers the distinct columns of a flat table, with 0 for the all-DEAD column.
+     *
+     * @param delta a table of stateCount rows and width columns
+     * @param stateCount the number of rows in delta
+     * @param width the number of columns in delta
+     * @param columnClass receives the class id of each column
+     * @return the number of classes, including class 0
+     */
+    static int group(int[] delta, int stateCount, int width, int[] columnClass) {
+        Map<Column, Integer> classes = new HashMap<>();
+        // class 0 is the all-DEAD column, so symbols that never lead anywhere fold into it
+        int[] deadColumn = new int[stateCount];
+        Arrays.fill(deadColumn, CompiledDFA.DEAD);
+        classes.put(new Column(deadColumn, 0, 1), 0);
+
+        for (int j = 0; j < width; j++) {
+            Column column = new Column(delta, j, width);
+            Integer id = classes.get(column);
+            if (id == null) {
+                id = classes.size();
+                classes.put(column, id);
+            }
+            columnClass[j] = id;
+        }
+        return classes.size();
+    }
+
+    /**
+     * Partitions the columns of a transition table into classes with identical targets, one row at a time,
+     * without building a per-symbol table. Every column starts in class 0, and each row splits the columns
+     * of a class that have a transition in it by their target; the columns a row leaves DEAD stay put.
+     * So class 0 ends up holding exactly the columns that are DEAD in every row. Each row costs a hash
+     * probe per transition it has, and the extra memory is a few arrays of |Sigma| ints.
+     *
+     * @param table the transition table
+     * @param columnClass receives the class id of each column of the table; must be all 0
+     * @return the number of classes, including class 0
+     */
+    static int refine(TransitionTable table, int[] columnClass) {
+        final int m = columnClass.length;
+        int count = 1;
+        // size[k] is the number of columns in class k
+        int[] size = new int[m + 1];
+        size[0] = m;
+        // the groups of one row: the class they split off from, how many columns they hold and their new class
+        int[] groupClass = new int[m];
+        int[] groupSize = new int[m];
+        int[] cellGroup = new int[m];
+        GroupTable groups = new GroupTable(m);
+        for (int q = 0; q < table.stateCount; q++) {
+            int[] row = table.rows[q];
+            if (row == null) continue;
+            groups.clear();
+            int groupCount = 0;
+            for (int c = 0; c < row.length; c++) {
+                if (row[c] == CompiledDFA.DEAD) continue;
+                int g = groups.get(columnClass[c], row[c], groupCount);
+                if (g == groupCount) {
+                    groupClass[g] = columnClass[c];
+                    groupSize[g] = 0;
+                    groupCount++;
+                }
+                groupSize[g]++;
+                cellGroup[c] = g;
+            }
+            // a group that is all that is left of its class keeps the class id, except that class 0 stays all-DEAD
+            for (int g = 0; g < groupCount; g++) {
+                int k = groupClass[g];
+                if (k != 0 && groupSize[g] == size[k]) {
+                    continue;
+                }
+                size[k] -= groupSize[g];
+                size[count] = groupSize[g];
+                groupClass[g] = count++;
+            }
+            for (int c = 0; c < row.length; c++) {
+                if (row[c] != CompiledDFA.DEAD) columnClass[c] = groupClass[cellGroup[c]];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Builds the two-level lookup for a known symbol to class assignment.
+     *
+     * @param symbols Sigma, indexed by symbol index
+     * @param symbolClass the class id of each symbol index
+     * @param classCount the number of classes, including class 0
+     * @return the lookup table
+     */
+    static SymbolClasses build(char[] symbols, int[] symbolClass, int classCount) {
+        int[][] fullPages = new int[PAGE_SIZE][];
+        for (int j = 0; j < symbols.length; j++) {
+            int hi = symbols[j] >>> 8;
+            if (fullPages[hi] == null) fullPages[hi] = new int[PAGE_SIZE];
+            fullPages[hi][symbols[j] & 0xFF] = symbolClass[j];
+        }
+
+        // page 0 is all zeroes and is shared by every high byte that Sigma never touches
+        Map<Column, Integer> offsets = new HashMap<>();
+        int[] empty = new int[PAGE_SIZE];
+        offsets.put(new Column(empty, 0, 1), 0);
+        int[] top = new int[PAGE_SIZE];
+        int[] pages = new int[PAGE_SIZE];
+        int used = PAGE_SIZE;
+        for (int hi = 0; hi < PAGE_SIZE; hi++) {
+            if (fullPages[hi] == null) continue;
+            Column page = new Column(fullPages[hi], 0, 1);
+            Integer offset = offsets.get(page);
+            if (offset == null) {
+                offset = used;
+                offsets.put(page, offset);
+                pages = Arrays.copyOf(pages, used + PAGE_SIZE);
+                System.arraycopy(fullPages[hi], 0, pages, used, PAGE_SIZE);
+                used += PAGE_SIZE;
+            }
+            top[hi] = offset;
+        }
+        return new SymbolClasses(top, pages, classCount);
+    }
+
+    /**
+     * Numbers the distinct (class, target) pairs of one row, in an open-addressed table of long keys
+     * that is cleared by bumping a generation instead of refilling it.
+     */
+    private static final class GroupTable {
+        private final long[] keys;
+        private final int[] values;
+        private final int[] generation;
+        private final int mask;
+        private int current;
+
+        GroupTable(int maxPairs) {
+            int capacity = Integer.highestOneBit(Math.max(1, maxPairs) * 2 - 1) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            generation = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        void clear() {
+            current++;
+        }
+
+        // the number of the pair, which is next if it was not seen since the last clear
+        int get(int symbolClass, int target, int next) {
+            long key = ((long) symbolClass << 32) | (target & 0xFFFFFFFFL);
+            int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (generation[i] == current) {
+                if (keys[i] == key) return values[i];
+                i = (i + 1) & mask;
+            }
+            generation[i] = current;
+            keys[i] = key;
+            values[i] = next;
+            return next;
+        }
+    }
+
+    /**
+     * A strided slice of an int array compared by content, used to group identical
+     * transition columns and identical pages without copying them.
+     */
+    private static final class Column {
+        private final int[] data;
+        private final int offset;
+        private final int stride;
+        private final int length;
+        private final int hash;
+
+        Column(int[] data, int offset, int stride) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.length = (stride == 1) ? data.length - offset : (data.length - offset + stride - 1) / stride;
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + data[offset + i * stride];
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Column)) return false;
+            Column other = (Column) o;
+            if (other.hash != hash || other.length != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (data[offset + i * stride] != other.data[other.offset + i * other.stride]) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The states, alphabet and transitions behind a {@link DFA}, stored as int ids.
+ *
+ * Transitions are kept per state as a row indexed by column, where a column is the position
+ * at which a symbol was added to the table. A DFA maps its symbols to columns itself, so
+ * DFAs that differ only by a permutation of symbols, as produced by {@link DFA#swap},
+ * can share one table. A shared table is never changed: an owner that wants to change it
+ * takes a private {@link #copy()} first.
+ */
+final class TransitionTable {
+    /** State names by id, in the order they were added */
+    String[] names = new String[8];
+    int stateCount;
+    /** State ids by name */
+    Map<String, Integer> ids = new HashMap<>();
+
+    /** Symbols in the order they were added; symbols[c] was added as column c */
+    char[] symbols = new char[4];
+    int symbolCount;
+
+    /** rows[q][c] is the target of state q on column c, or CompiledDFA.DEAD; short rows end in DEAD */
+    int[][] rows = new int[8][];
+
+    /** Final states, plus the order they were set in */
+    BitSet finals = new BitSet();
+    int[] finalOrder = new int[4];
+    int finalCount;
+
+    /**
+     * Code point range transitions, null until the first one is added. ranges[q] holds the ranges of
+     * state q as lo, hi, target triples sorted by lo, or is null if it has none; ranges of one state never
+     * overlap. An array in it is replaced instead of changed, so copies of the table can share them.
+     */
+    int[][] ranges;
+    int rangeCount;
+
+    /** Start state id, or CompiledDFA.DEAD if none is set */
+    int start = CompiledDFA.DEAD;
+
+    /** Set once a second DFA refers to this table; neither owner may change it after that */
+    boolean shared;
+
+    /**
+     * @return an unshared copy of this table
+     */
+    TransitionTable copy() {
+        TransitionTable t = new TransitionTable();
+        t.names = Arrays.copyOf(names, Math.max(stateCount, 8));
+        t.stateCount = stateCount;
+        t.ids = new HashMap<>(ids);
+        t.symbols = Arrays.copyOf(symbols, Math.max(symbolCount, 4));
+        t.symbolCount = symbolCount;
+        t.rows = new int[t.names.length][];
+        for (int q = 0; q < stateCount; q++) {
+            if (rows[q] != null) t.rows[q] = rows[q].clone();
+        }
+        t.finals = (BitSet) finals.clone();
+        t.finalOrder = Arrays.copyOf(finalOrder, Math.max(finalCount, 4));
+        t.finalCount = finalCount;
+        t.start = start;
+        if (ranges != null) t.ranges = Arrays.copyOf(ranges, t.names.length);
+        t.rangeCount = rangeCount;
+        return t;
+    }
+
+    /**
+     * Adds a state with no transitions.
+     * @return the id of the new state
+     */
+    int addState(String name) {
+        if (stateCount == names.length) {
+            names = Arrays.copyOf(names, stateCount * 2);
+            rows = Arrays.copyOf(rows, stateCount * 2);
+            if (ranges != null) ranges = Arrays.copyOf(ranges, stateCount * 2);
+        }
+        ids.put(name, stateCount);
+        names[stateCount] = name;
+        return stateCount++;
+    }
+
+    /**
+     * Adds a symbol as a new column.
+     * @return the column of the new symbol
+     */
+    int addSymbol(char symbol) {
+        if (symbolCount == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbolCount * 2);
+        }
+        symbols[symbolCount] = symbol;
+        return symbolCount++;
+    }
+
+    // the target of state q on column c
+    int target(int q, int c) {
+        int[] row = rows[q];
+        return (row == null || c >= row.length) ? CompiledDFA.DEAD : row[c];
+    }
+
+    void setTarget(int q, int c, int target) {
+        int[] row = rows[q];
+        if (row == null || c >= row.length) {
+            int old = (row == null) ? 0 : row.length;
+            row = (row == null) ? new int[symbolCount] : Arrays.copyOf(row, symbolCount);
+            Arrays.fill(row, old, row.length, CompiledDFA.DEAD);
+            rows[q] = row;
+        }
+        row[c] = target;
+    }
+
+    /**
+     * Builds the flat class transition table, reading one column of each class.
+     * @param columnClass the class of each column, as computed by {@link SymbolClasses#refine}
+     * @param classCount the number of classes, including the all-DEAD class 0
+     * @return the table, indexed by state * classCount + classId
+     */
+    int[] classTable(int[] columnClass, int classCount) {
+        int[] representative = representatives(columnClass, classCount);
+        int[] delta = new int[stateCount * classCount];
+        for (int q = 0; q < stateCount; q++) {
+            delta[q * classCount] = CompiledDFA.DEAD;
+            for (int k = 1; k < classCount; k++) {
+                delta[q * classCount + k] = target(q, representative[k]);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * @param columnClass the class of each column
+     * @param classCount the number of classes
+     * @return the first column of each class; the entry for class 0 is meaningless, since it is all DEAD
+     */
+    int[] representatives(int[] columnClass, int classCount) {
+        int[] representative = new int[classCount];
+        for (int c = symbolCount - 1; c >= 0; c--) {
+            representative[columnClass[c]] = c;
+        }
+        return representative;
+    }
+
+    void setFinal(int q) {
+        if (finals.get(q)) return;
+        finals.set(q);
+        if (finalCount == finalOrder.length) {
+            finalOrder = Arrays.copyOf(finalOrder, finalCount * 2);
+        }
+        finalOrder[finalCount++] = q;
+    }
+
+    // index of the last range in r starting at or before codePoint, -1 if there is none
+    private static int lastStartingAt(int[] r, int codePoint) {
+        int lo = 0;
+        int hi = r.length / 3 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (r[mid * 3] <= codePoint) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    // the target of state q on a code point through its ranges, or CompiledDFA.DEAD
+    int rangeTarget(int q, int codePoint) {
+        int[] r = (ranges == null) ? null : ranges[q];
+        if (r == null) return CompiledDFA.DEAD;
+        // the last range starting at or before codePoint is the only one that can hold it
+        int i = lastStartingAt(r, codePoint);
+        return (i >= 0 && codePoint <= r[i * 3 + 1]) ? r[i * 3 + 2] : CompiledDFA.DEAD;
+    }
+
+    /**
+     * @return true if any range of state q shares a code point with lo..hi
+     */
+    boolean rangeOverlaps(int q, int lo, int hi) {
+        int[] r = (ranges == null) ? null : ranges[q];
+        if (r == null) return false;
+        int i = lastStartingAt(r, hi);
+        return i >= 0 && r[i * 3 + 1] >= lo;
+    }
+
+    /**
+     * Adds a range to state q, which must not overlap its other ranges.
+     */
+    void addRange(int q, int lo, int hi, int target) {
+        if (ranges == null) ranges = new int[names.length][];
+        int[] r = ranges[q];
+        int count = (r == null) ? 0 : r.length / 3;
+        int at = 0;
+        while (at < count && r[at * 3] < lo) {
+            at++;
+        }
+        int[] grown = new int[(count + 1) * 3];
+        if (r != null) {
+            System.arraycopy(r, 0, grown, 0, at * 3);
+            System.arraycopy(r, at * 3, grown, (at + 1) * 3, (count - at) * 3);
+        }
+        grown[at * 3] = lo;
+        grown[at * 3 + 1] = hi;
+        grown[at * 3 + 2] = target;
+        ranges[q] = grown;
+        rangeCount++;
+    }
+}
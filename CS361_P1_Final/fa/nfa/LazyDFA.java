@@ -0,0 +1,235 @@
+package fa.nfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The subset construction of an NFA, built one DFA state at a time as matching needs it.
+ *
+ * Each DFA state is an epsilon-closed set of NFA states. The states and their transitions
+ * are kept in a cache of a fixed number of states; a transition is worked out with
+ * {@link NFATable#step} the first time it is taken and is a single table read after that.
+ * When the cache is full it is flushed and filling starts over. If it filled up again, after an
+ * earlier flush, in fewer than {@link #THRASH_FACTOR} chars per cached state, the input keeps producing
+ * new states faster than the cache pays off, so instead of flushing, the run carries on by stepping the
+ * set of NFA states directly for the rest of its input. The first fill of the cache never counts as
+ * thrashing. The cache is kept between runs.
+ */
+final class LazyDFA {
+    static final int DEAD = -1;
+    private static final int UNKNOWN = -2;
+    /** Chars per cached state below which refilling the cache after a flush counts as thrashing */
+    static final int THRASH_FACTOR = 10;
+
+    private final NFATable nfa;
+    private final int capacity;
+    private final int width;
+    /** The set of NFA states of each cached state */
+    private long[][] sets;
+    private boolean[] finals;
+    /** Transitions of the cached states, [state * width + symbol], UNKNOWN until taken */
+    private int[] table;
+    private int size;
+    private final Map<SetKey, Integer> ids = new HashMap<>();
+    /** Chars read through the cache since it was last flushed */
+    private long sinceFlush;
+    private int flushes;
+    private long fallbacks;
+
+    /**
+     * @param nfa the NFA to determinize
+     * @param capacity the most DFA states kept at once, at least 2
+     */
+    LazyDFA(NFATable nfa, int capacity) {
+        this.nfa = nfa;
+        this.capacity = capacity;
+        this.width = Math.max(1, nfa.symbols.length);
+        int initial = Math.min(capacity, 16);
+        sets = new long[initial][];
+        finals = new boolean[initial];
+        table = new int[initial * width];
+    }
+
+    /**
+     * @return the number of times the cache was flushed
+     */
+    int flushes() {
+        return flushes;
+    }
+
+    /**
+     * @return the number of runs that fell back to stepping NFA state sets
+     */
+    long fallbacks() {
+        return fallbacks;
+    }
+
+    /**
+     * @return the number of DFA states in the cache
+     */
+    int size() {
+        return size;
+    }
+
+    // the id of a cached set, adding it if there is room; returns UNKNOWN if the cache is full
+    private int intern(long[] set) {
+        if (NFATable.isEmpty(set)) return DEAD;
+        SetKey key = new SetKey(set);
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        if (size == capacity) return UNKNOWN;
+        if (size == sets.length) {
+            int grown = Math.min(capacity, size * 2);
+            sets = Arrays.copyOf(sets, grown);
+            finals = Arrays.copyOf(finals, grown);
+            table = Arrays.copyOf(table, grown * width);
+        }
+        int q = size++;
+        sets[q] = set;
+        finals[q] = nfa.isFinal(set);
+        Arrays.fill(table, q * width, (q + 1) * width, UNKNOWN);
+        ids.put(key, q);
+        return q;
+    }
+
+    private void flush() {
+        ids.clear();
+        Arrays.fill(sets, 0, size, null);
+        size = 0;
+        sinceFlush = 0;
+        flushes++;
+    }
+
+    /**
+     * A run of the NFA over input given in pieces.
+     */
+    final class Run {
+        /** The cached state, or DEAD; unused once the run has fallen back */
+        private int state;
+        /** The set of NFA states once the run has fallen back, otherwise null */
+        private long[] set;
+        private long[] scratch;
+
+        Run() {
+            state = intern(nfa.start.clone());
+            if (state == UNKNOWN) {
+                flush();
+                state = intern(nfa.start.clone());
+            }
+        }
+
+        /**
+         * @return true if no input can lead to acceptance any more
+         */
+        boolean isDead() {
+            return (set == null) ? state == DEAD : NFATable.isEmpty(set);
+        }
+
+        /**
+         * @return true if the input so far is accepted
+         */
+        boolean accepted() {
+            return (set == null) ? state != DEAD && finals[state] : nfa.isFinal(set);
+        }
+
+        /**
+         * Reads part of a character sequence.
+         * @param input the input characters
+         * @param off index of the first char
+         * @param len number of chars to read
+         */
+        void feed(CharSequence input, int off, int len) {
+            final int end = off + len;
+            int i = off;
+            if (set == null) {
+                int q = state;
+                int mark = off;
+                final int w = width;
+                for (; i < end && q != DEAD; i++) {
+                    int symbol = nfa.symbolIndex(input.charAt(i));
+                    if (symbol < 0) {
+                        q = DEAD;
+                        break;
+                    }
+                    int t = table[q * w + symbol];
+                    if (t == UNKNOWN) {
+                        sinceFlush += i - mark;
+                        mark = i;
+                        t = add(q, symbol);
+                        if (t == UNKNOWN) {
+                            // thrashing: carry on from the set reached on this char, which add left in set
+                            i++;
+                            break;
+                        }
+                    }
+                    q = t;
+                }
+                state = q;
+                if (set == null) {
+                    sinceFlush += i - mark;
+                    return;
+                }
+            }
+            for (; i < end; i++) {
+                int symbol = nfa.symbolIndex(input.charAt(i));
+                if (symbol < 0) {
+                    Arrays.fill(set, 0L);
+                    return;
+                }
+                nfa.step(set, symbol, scratch);
+                long[] swap = set;
+                set = scratch;
+                scratch = swap;
+                if (NFATable.isEmpty(set)) return;
+            }
+        }
+
+        // works out and caches the transition of q on a symbol; UNKNOWN if the run falls back
+        private int add(int q, int symbol) {
+            long[] next = new long[nfa.words];
+            nfa.step(sets[q], symbol, next);
+            int t = intern(next);
+            if (t != UNKNOWN) {
+                table[q * width + symbol] = t;
+                return t;
+            }
+            // only a cache that was already flushed once can be thrashing; the first fill just warms it up
+            if (flushes > 0 && sinceFlush < (long) THRASH_FACTOR * capacity) {
+                fallbacks++;
+                set = next;
+                scratch = new long[nfa.words];
+                return UNKNOWN;
+            }
+            long[] from = sets[q];
+            flush();
+            int p = intern(from);
+            t = intern(next);
+            table[p * width + symbol] = t;
+            return t;
+        }
+    }
+
+    /**
+     * A state set as a hash map key.
+     */
+    static final class SetKey {
+        private final long[] set;
+        private final int hash;
+
+        SetKey(long[] set) {
+            this.set = set;
+            this.hash = Arrays.hashCode(set);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SetKey && Arrays.equals(set, ((SetKey) o).set);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
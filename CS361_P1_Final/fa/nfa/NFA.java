@@ -0,0 +1,323 @@
+package fa.nfa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fa.dfa.DFA;
+
+
+/*
+ * The logic for an NFA within this project.
+ * States may have any number of targets on a symbol, and 'e' labels epsilon transitions.
+ * accepts determinizes lazily (see LazyDFA): DFA states are built only for the state sets
+ * the input actually reaches, and kept in a cache of a bounded number of states between calls.
+ * toDFA runs the full subset construction instead.
+ * An NFA, and so its cache, must not be used by several threads at once.
+ */
+public class NFA implements NFAInterface {
+    /** Default number of DFA states kept by the lazy determinization */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    // Chars read at a time from a Reader
+    private static final int CHUNK_SIZE = 8192;
+
+    // States by name, in the order they were added
+    private final Map<String, NFAState> states = new LinkedHashMap<>();
+    private final List<NFAState> order = new ArrayList<>();
+    private final Set<Character> sigma = new LinkedHashSet<>();
+    private NFAState start;
+    private final Set<NFAState> finals = new LinkedHashSet<>();
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    // Lazily determinized form used for matching, thrown away whenever the NFA changes
+    private LazyDFA lazy;
+
+    /*
+     * Adds a state to the NFA
+     * @param name of the added state
+     * @return true if the state is added, false if the name is null or already taken
+     */
+    @Override
+    public boolean addState(String name) {
+        if (name == null || states.containsKey(name)) return false;
+        NFAState state = new NFAState(this, order.size(), name);
+        states.put(name, state);
+        order.add(state);
+        changed();
+        return true;
+    }
+
+    /*
+     * Sets a state to be final
+     * @param name of the state
+     * @return true if the state exists, otherwise false
+     */
+    @Override
+    public boolean setFinal(String name) {
+        NFAState state = states.get(name);
+        if (state == null) return false;
+        finals.add(state);
+        changed();
+        return true;
+    }
+
+    /*
+     * Sets the start state
+     * @param name of the state
+     * @return true if the state exists, otherwise false
+     */
+    @Override
+    public boolean setStart(String name) {
+        NFAState state = states.get(name);
+        if (state == null) return false;
+        start = state;
+        changed();
+        return true;
+    }
+
+    /*
+     * Adds a symbol to the alphabet; the epsilon symbol 'e' is never added
+     * @param symbol to add
+     */
+    @Override
+    public void addSigma(char symbol) {
+        if (symbol != EPSILON && sigma.add(symbol)) changed();
+    }
+
+    /*
+     * Adds transitions from one state to a set of states
+     * @param fromState the state the transitions start at
+     * @param toStates the states they end at
+     * @param onSymb a symbol of the alphabet, or 'e'
+     * @return true if every state exists and the symbol is valid, otherwise false and nothing is added
+     */
+    @Override
+    public boolean addTransition(String fromState, Set<String> toStates, char onSymb) {
+        NFAState from = states.get(fromState);
+        if (from == null || !isSymbol(onSymb)) return false;
+        for (String name : toStates) {
+            if (!states.containsKey(name)) return false;
+        }
+        for (String name : toStates) {
+            from.addTransition(onSymb, states.get(name));
+        }
+        return true;
+    }
+
+    @Override
+    public Set<NFAState> getToState(NFAState from, char onSymb) {
+        return from.toStates(onSymb);
+    }
+
+    @Override
+    public Set<NFAState> eClosure(NFAState s) {
+        Set<NFAState> closure = new LinkedHashSet<>();
+        ArrayDeque<NFAState> work = new ArrayDeque<>();
+        closure.add(s);
+        work.push(s);
+        while (!work.isEmpty()) {
+            for (NFAState t : work.pop().toStates(EPSILON)) {
+                if (closure.add(t)) work.push(t);
+            }
+        }
+        return closure;
+    }
+
+    @Override
+    public boolean isDFA() {
+        for (NFAState q : order) {
+            for (Map.Entry<Character, Set<NFAState>> e : q.getTransitions().entrySet()) {
+                if (e.getKey() == EPSILON || e.getValue().size() > 1) return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Builds the equivalent DFA by subset construction
+     * Each DFA state is named after its set of NFA states, e.g. [a,b], in the order the
+     * NFA states were added; a backslash escapes any backslash, comma or square bracket in an
+     * NFA state name, so no two sets get the same name. The empty set is left out, so
+     * transitions into it are missing.
+     * @return the DFA
+     */
+    @Override
+    public DFA toDFA() {
+        NFATable table = table();
+        DFA dfa = new DFA();
+        for (char c : table.symbols) {
+            dfa.addSigma(c);
+        }
+        if (NFATable.isEmpty(table.start)) return dfa;
+
+        // DFA state ids by set, and the sets in the order their states were added
+        Map<LazyDFA.SetKey, Integer> ids = new HashMap<>();
+        List<long[]> sets = new ArrayList<>();
+        List<Integer> dfaIds = new ArrayList<>();
+        int start = dfa.newState(name(table.start));
+        ids.put(new LazyDFA.SetKey(table.start), start);
+        sets.add(table.start);
+        dfaIds.add(start);
+        dfa.setStart(start);
+        for (int i = 0; i < sets.size(); i++) {
+            long[] set = sets.get(i);
+            int from = dfaIds.get(i);
+            if (table.isFinal(set)) dfa.setFinal(from);
+            for (int j = 0; j < table.symbols.length; j++) {
+                long[] next = new long[table.words];
+                table.step(set, j, next);
+                if (NFATable.isEmpty(next)) continue;
+                Integer to = ids.get(new LazyDFA.SetKey(next));
+                if (to == null) {
+                    to = dfa.newState(name(next));
+                    ids.put(new LazyDFA.SetKey(next), to);
+                    sets.add(next);
+                    dfaIds.add(to);
+                }
+                dfa.addTransition(from, to, table.symbols[j]);
+            }
+        }
+        return dfa;
+    }
+
+    // the DFA state name of a set of NFA states
+    private String name(long[] set) {
+        StringBuilder name = new StringBuilder("[");
+        for (int w = 0; w < set.length; w++) {
+            for (long bits = set[w]; bits != 0; bits &= bits - 1) {
+                if (name.length() > 1) name.append(',');
+                String member = order.get((w << 6) + Long.numberOfTrailingZeros(bits)).getName();
+                for (int i = 0; i < member.length(); i++) {
+                    char c = member.charAt(i);
+                    if (c == '\\' || c == ',' || c == '[' || c == ']') name.append('\\');
+                    name.append(c);
+                }
+            }
+        }
+        return name.append(']').toString();
+    }
+
+    /*
+     * Sets how many DFA states the lazy determinization keeps, which also empties the cache
+     * @param states the most states kept at once, at least 2
+     */
+    public void setCacheSize(int states) {
+        if (states < 2) throw new IllegalArgumentException("cache size must be at least 2: " + states);
+        cacheSize = states;
+        lazy = null;
+    }
+
+    /*
+     * Gives the number of times the cache of DFA states filled up and was emptied
+     * @return the count since the NFA was last changed
+     */
+    public int cacheFlushes() {
+        return (lazy == null) ? 0 : lazy.flushes();
+    }
+
+    /*
+     * Gives the number of runs that stopped using the cache because it was thrashing,
+     * and simulated the NFA on sets of states instead
+     * @return the count since the NFA was last changed
+     */
+    public long cacheFallbacks() {
+        return (lazy == null) ? 0 : lazy.fallbacks();
+    }
+
+    // Called by this NFA and its states whenever anything changes
+    void changed() {
+        lazy = null;
+    }
+
+    // Whether a transition on the symbol may be added: 'e' or a symbol of Sigma
+    boolean isSymbol(char symbol) {
+        return symbol == EPSILON || sigma.contains(symbol);
+    }
+
+    private NFATable table() {
+        return new NFATable(order, sigma, start, finals);
+    }
+
+    private LazyDFA.Run newRun() {
+        if (lazy == null) {
+            lazy = new LazyDFA(table(), cacheSize);
+        }
+        return lazy.new Run();
+    }
+
+    /*
+     * Checks if a string is accepted by the NFA
+     * @param s the string to check
+     * @return true if the string is accepted, otherwise false
+     */
+    @Override
+    public boolean accepts(String s) {
+        return accepts((CharSequence) s);
+    }
+
+    @Override
+    public boolean accepts(CharSequence s) {
+        LazyDFA.Run run = newRun();
+        run.feed(s, 0, s.length());
+        return run.accepted();
+    }
+
+    @Override
+    public boolean accepts(CharBuffer buf) {
+        LazyDFA.Run run = newRun();
+        run.feed(buf, 0, buf.remaining());
+        return run.accepted();
+    }
+
+    @Override
+    public boolean accepts(Reader in) throws IOException {
+        LazyDFA.Run run = newRun();
+        char[] chunk = new char[CHUNK_SIZE];
+        CharBuffer view = CharBuffer.wrap(chunk);
+        int n;
+        while (!run.isDead() && (n = in.read(chunk, 0, chunk.length)) != -1) {
+            run.feed(view, 0, n);
+        }
+        return run.accepted();
+    }
+
+    @Override
+    public boolean accepts(InputStream in, Charset charset) throws IOException {
+        return accepts(new InputStreamReader(in, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)));
+    }
+
+    @Override
+    public Set<Character> getSigma() {
+        return Collections.unmodifiableSet(sigma);
+    }
+
+    @Override
+    public NFAState getState(String name) {
+        return states.get(name);
+    }
+
+    @Override
+    public boolean isFinal(String name) {
+        NFAState state = states.get(name);
+        return state != null && finals.contains(state);
+    }
+
+    @Override
+    public boolean isStart(String name) {
+        return start != null && start.getName().equals(name);
+    }
+}
@@ -0,0 +1,54 @@
+package fa.nfa;
+
+import java.util.Set;
+
+import fa.FAInterface;
+import fa.dfa.DFA;
+
+
+public interface NFAInterface extends FAInterface {
+
+	/**
+	 * The symbol that labels epsilon transitions. It is never part of Sigma.
+	 */
+	public static final char EPSILON = 'e';
+
+	/**
+	 * Adds transitions to the NFA's delta data structure
+	 * @param fromState is the label of the state where the transitions start
+	 * @param toStates is the set of labels of the states where the transitions end
+	 * @param onSymb is the symbol from the NFA's alphabet, or EPSILON
+	 * @return true if successful and false if one of the states don't exist or the symbol is not in the alphabet
+	 */
+	public boolean addTransition(String fromState, Set<String> toStates, char onSymb);
+
+	/**
+	 * Returns the states reachable from a state on a symbol, without following epsilon transitions
+	 * @param from the state to start from
+	 * @param onSymb the symbol, or EPSILON
+	 * @return the set of target states, empty if there are none
+	 */
+	public Set<NFAState> getToState(NFAState from, char onSymb);
+
+	/**
+	 * Computes the set of states reachable from a state through epsilon transitions alone
+	 * @param s the state to start from
+	 * @return the epsilon closure of s, which contains s
+	 */
+	public Set<NFAState> eClosure(NFAState s);
+
+	/**
+	 * Determines if the NFA is already deterministic: it has no epsilon
+	 * transitions and at most one target per state and symbol
+	 * @return true if the NFA is a DFA with possibly missing transitions
+	 */
+	public boolean isDFA();
+
+	/**
+	 * Builds the equivalent DFA by full subset construction. This may take time
+	 * and memory exponential in the number of NFA states.
+	 * @return a DFA accepting the same language
+	 */
+	public DFA toDFA();
+
+}
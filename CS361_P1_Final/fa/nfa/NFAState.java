@@ -0,0 +1,78 @@
+package fa.nfa;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import fa.State;
+
+/**
+ * Represents a state in a Nondeterministic Finite Automaton (NFA).
+ * Each state maps input symbols, and the epsilon symbol 'e', to a set of NFA states.
+ * This class extends the abstract {@link fa.State} class.
+ *
+ * Adding a transition to a state of an NFA through this class is the same as adding it through the NFA.
+ */
+public class NFAState extends State {
+    /** Stores transitions for this state: maps input symbols to sets of destination states */
+    private final Map<Character, Set<NFAState>> transitions = new LinkedHashMap<>();
+    /** The NFA this state belongs to, or null for a standalone state */
+    private final NFA owner;
+    /** Id of this state in its owner, in the order states were added */
+    final int id;
+
+    /**
+     * Constructs an NFA state with a given name and no transitions.
+     *
+     * @param name The name of the state.
+     */
+    public NFAState(String name) {
+        this(null, -1, name);
+    }
+
+    NFAState(NFA owner, int id, String name) {
+        super(name);
+        this.owner = owner;
+        this.id = id;
+    }
+
+    /**
+     * Adds a transition from this state to another NFA state on a given symbol.
+     * For a state of an NFA the symbol must be 'e' or in its Sigma, and toState must be a state of the
+     * same NFA, as {@link NFA#addTransition(String, Set, char)} requires.
+     *
+     * @param symbol The input character, or 'e' for an epsilon transition.
+     * @param toState A destination state for this transition.
+     * @throws IllegalArgumentException if this state belongs to an NFA and the symbol or toState does not
+     */
+    public void addTransition(char symbol, NFAState toState) {
+        if (owner != null) {
+            if (!owner.isSymbol(symbol)) throw new IllegalArgumentException("symbol not in Sigma: " + symbol);
+            if (toState.owner != owner) throw new IllegalArgumentException("not a state of this NFA: " + toState.getName());
+        }
+        transitions.computeIfAbsent(symbol, k -> new LinkedHashSet<>()).add(toState);
+        if (owner != null) owner.changed();
+    }
+
+    /**
+     * Retrieves the states reached on a symbol.
+     *
+     * @param symbol The input character, or 'e'.
+     * @return A read-only set of destination states, empty if there are none.
+     */
+    public Set<NFAState> toStates(char symbol) {
+        Set<NFAState> to = transitions.get(symbol);
+        return (to == null) ? Collections.emptySet() : Collections.unmodifiableSet(to);
+    }
+
+    /**
+     * Retrieves all transitions from this state.
+     *
+     * @return A read-only map of symbols to their destination states.
+     */
+    public Map<Character, Set<NFAState>> getTransitions() {
+        return Collections.unmodifiableMap(transitions);
+    }
+}
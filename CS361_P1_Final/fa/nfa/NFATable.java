@@ -0,0 +1,174 @@
+package fa.nfa;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The transitions of an NFA in arrays, with sets of states as bitsets of long words.
+ *
+ * Stepping a set of states on a symbol ORs together the epsilon closures of the targets of its
+ * members, one 64-state word at a time, so the closure is never recomputed while matching.
+ * The epsilon closure of a state is stored only if it holds more than the state itself.
+ * Instances are not changed after construction.
+ */
+final class NFATable {
+    /** Number of NFA states */
+    final int stateCount;
+    /** Number of long words in a state set */
+    final int words;
+    /** The symbols of Sigma, in the order they were added */
+    final char[] symbols;
+    /** Index of each symbol in symbols, -1 for chars not in Sigma; only as long as the largest symbol */
+    private final int[] symbolIndex;
+    /** Targets of each state on each symbol, [symbol][state], null if there are none */
+    private final int[][][] delta;
+    /** Epsilon closure of each state, null if it is just the state */
+    private final long[][] closures;
+    /** Epsilon closure of the start state, empty if there is none */
+    final long[] start;
+    /** Final states */
+    final long[] finals;
+
+    NFATable(List<NFAState> states, Set<Character> sigma, NFAState startState, Set<NFAState> finalStates) {
+        stateCount = states.size();
+        words = Math.max(1, (stateCount + 63) >>> 6);
+        symbols = new char[sigma.size()];
+        int max = -1;
+        int j = 0;
+        for (char c : sigma) {
+            symbols[j++] = c;
+            max = Math.max(max, c);
+        }
+        symbolIndex = new int[max + 1];
+        Arrays.fill(symbolIndex, -1);
+        for (j = 0; j < symbols.length; j++) {
+            symbolIndex[symbols[j]] = j;
+        }
+
+        delta = new int[symbols.length][stateCount][];
+        int[][] epsilon = new int[stateCount][];
+        for (NFAState q : states) {
+            for (Map.Entry<Character, Set<NFAState>> e : q.getTransitions().entrySet()) {
+                int[] targets = ids(e.getValue());
+                if (e.getKey() == NFAInterface.EPSILON) {
+                    epsilon[q.id] = targets;
+                } else {
+                    delta[symbolIndex[e.getKey()]][q.id] = targets;
+                }
+            }
+        }
+
+        closures = new long[stateCount][];
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        for (int q = 0; q < stateCount; q++) {
+            if (epsilon[q] == null) continue;
+            long[] closure = new long[words];
+            add(closure, q);
+            work.push(q);
+            while (!work.isEmpty()) {
+                int[] next = epsilon[work.pop()];
+                if (next == null) continue;
+                for (int t : next) {
+                    if (!contains(closure, t)) {
+                        add(closure, t);
+                        work.push(t);
+                    }
+                }
+            }
+            if (count(closure) > 1) closures[q] = closure;
+        }
+
+        start = new long[words];
+        if (startState != null) closeInto(startState.id, start);
+        finals = new long[words];
+        for (NFAState q : finalStates) {
+            add(finals, q.id);
+        }
+    }
+
+    private static int[] ids(Set<NFAState> states) {
+        int[] ids = new int[states.size()];
+        int i = 0;
+        for (NFAState s : states) {
+            ids[i++] = s.id;
+        }
+        return ids;
+    }
+
+    static void add(long[] set, int q) {
+        set[q >>> 6] |= 1L << q;
+    }
+
+    static boolean contains(long[] set, int q) {
+        return (set[q >>> 6] & (1L << q)) != 0;
+    }
+
+    static int count(long[] set) {
+        int n = 0;
+        for (long w : set) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+
+    static boolean isEmpty(long[] set) {
+        for (long w : set) {
+            if (w != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param c a char
+     * @return the index of c in Sigma, or -1 if it is not in Sigma
+     */
+    int symbolIndex(char c) {
+        return (c < symbolIndex.length) ? symbolIndex[c] : -1;
+    }
+
+    /**
+     * @param set a set of states
+     * @return true if the set holds a final state
+     */
+    boolean isFinal(long[] set) {
+        for (int w = 0; w < words; w++) {
+            if ((set[w] & finals[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    // adds the epsilon closure of q to a set
+    private void closeInto(int q, long[] set) {
+        long[] closure = closures[q];
+        if (closure == null) {
+            add(set, q);
+        } else {
+            for (int w = 0; w < words; w++) {
+                set[w] |= closure[w];
+            }
+        }
+    }
+
+    /**
+     * Follows a symbol from every state of a set, then the epsilon transitions from there.
+     * @param from an epsilon-closed set of states
+     * @param symbol index of the symbol in Sigma
+     * @param to receives the resulting set; it must not be from
+     */
+    void step(long[] from, int symbol, long[] to) {
+        Arrays.fill(to, 0L);
+        int[][] targets = delta[symbol];
+        for (int w = 0; w < words; w++) {
+            for (long bits = from[w]; bits != 0; bits &= bits - 1) {
+                int[] next = targets[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                if (next == null) continue;
+                for (int t : next) {
+                    closeInto(t, to);
+                }
+            }
+        }
+    }
+}
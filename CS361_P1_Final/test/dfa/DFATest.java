@@ -2,11 +2,46 @@ package test.dfa;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import org.junit.Test;
 
+import fa.dfa.CodePointDFA;
+import fa.dfa.CompiledDFA;
 import fa.dfa.DFA;
+import fa.dfa.DFAExporter;
+import fa.dfa.DFAHolder;
+import fa.dfa.DFAMatch;
+import fa.dfa.DFAReader;
+import fa.dfa.DFASearcher;
+import fa.dfa.DFASet;
+import fa.dfa.DFAMatcher;
+import fa.dfa.DFAProfiler;
+import fa.dfa.DFAState;
+import fa.dfa.MappedDFA;
+import fa.dfa.MatchKind;
+import fa.dfa.MultiMatcher;
+import fa.dfa.OffHeapDFA;
+import fa.dfa.ProductDFA;
 
 public class DFATest {
 	
@@ -128,6 +163,276 @@ public class DFATest {
 		System.out.println("dfa1Swap accept pass");
 	}
 
+	@Test
+	public void test1_7() {
+		DFA dfa = dfa1();
+		DFA dfaSwap = dfa.swap('1', '0');
+		DFA dfaTwice = dfaSwap.swap('0', '1');
+		
+		//transitions of a swapped state lead to states of the swapped dfa
+		assertSame(dfaSwap.getState("b"), ((DFAState) dfaSwap.getState("a")).getTransitions().get('0'));
+		assertSame(dfa.getState("b"), ((DFAState) dfa.getState("a")).getTransitions().get('1'));
+		
+		//changing one dfa must not change the others that share its transitions
+		assertTrue(dfa.addTransition("a", "b", '0'));
+		assertTrue(dfa.accepts("0"));
+		assertFalse(dfaSwap.accepts("1"));
+		assertFalse(dfaTwice.accepts("0"));
+		assertTrue(dfaSwap.addState("c"));
+		assertNull(dfa.getState("c"));
+		assertEquals(dfa1().toString(), dfaTwice.toString());
+		
+		System.out.println("dfa1Swap independence pass");
+	}
+
+	@Test
+	public void test1_8() throws Exception {
+		DFA dfa = dfa1();
+		CompiledDFA snap = dfa.snapshot();
+		DFAHolder holder = new DFAHolder(snap);
+		
+		//changing the builder does not change the snapshot
+		assertTrue(dfa.addTransition("a", "b", '0'));
+		assertTrue(dfa.accepts("0"));
+		assertFalse(snap.accepts("0"));
+		
+		//threads keep matching while the snapshot is replaced under them
+		Thread[] threads = new Thread[4];
+		boolean[] ok = new boolean[threads.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread(() -> {
+				boolean good = true;
+				for (int i = 0; i < 20000; i++) {
+					DFAMatcher m = holder.newMatcher();
+					m.feed("10");
+					//dfa1 rejects 10 and its swap accepts it, but nothing else may happen
+					good &= m.isAccepting() == (m.getDFA() != snap);
+					CompiledDFA current = holder.get();
+					good &= current.accepts("101") != current.accepts("010");
+				}
+				ok[id] = good;
+			});
+			threads[t].start();
+		}
+		CompiledDFA swapped = dfa1().swap('0', '1').snapshot();
+		for (int i = 0; i < 1000; i++) {
+			holder.set((i % 2 == 0) ? swapped : snap);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (boolean good : ok) {
+			assertTrue(good);
+		}
+		assertSame(snap, holder.get());
+		assertFalse(holder.compareAndSet(swapped, snap));
+		
+		System.out.println("dfa1 snapshot pass");
+	}
+
+	@Test
+	public void test1_9() {
+		//dfa1 built through state ids
+		DFA dfa = new DFA();
+		dfa.addSigma('0');
+		dfa.addSigma('1');
+		int a = dfa.newState("a");
+		int b = dfa.newState("b");
+		assertEquals(0, a);
+		assertEquals(1, b);
+		assertEquals(-1, dfa.newState("a"));
+		assertEquals(b, dfa.stateId("b"));
+		assertEquals("b", dfa.stateName(b));
+		assertEquals(-1, dfa.stateId("c"));
+		assertTrue(dfa.setStart(a));
+		assertTrue(dfa.setFinal(b));
+		assertFalse(dfa.setFinal(2));
+		
+		//a bad entry anywhere means nothing is added
+		assertFalse(dfa.addTransitions(new int[] {a, a, b}, new int[] {a, b, 7}, new char[] {'0', '1', '0'}));
+		assertFalse(dfa.addTransitions(new int[] {a, a, b}, new int[] {a, b, a}, new char[] {'0', '1', '2'}));
+		assertFalse(dfa.addTransitions(new int[] {a}, new int[] {a, b}, new char[] {'0'}));
+		assertFalse(dfa.accepts("1"));
+		
+		assertTrue(dfa.addTransitions(new int[] {a, b, a}, new int[] {a, a, b}, new char[] {'0', '0', '1'}));
+		assertTrue(dfa.addTransition(b, b, '1'));
+		assertFalse(dfa.addTransition(b, 2, '1'));
+		assertEquals(dfa1().toString(), dfa.toString());
+		
+		System.out.println("dfa1 int id construction pass");
+	}
+
+	@Test
+	public void test1_10() throws IOException {
+		DFA dfa = dfa1();
+		StringWriter text = new StringWriter();
+		dfa.writeText(text);
+		assertEquals(dfa.toString(), text.toString());
+		
+		StringBuilder dot = new StringBuilder();
+		DFAExporter.writeDot(dfa, dot);
+		assertTrue(dot.toString().startsWith("digraph DFA {"));
+		assertTrue(dot.toString().contains("\t\"\" -> \"a\";\n"));
+		assertTrue(dot.toString().contains("\t\"b\" [shape=doublecircle];\n"));
+		assertTrue(dot.toString().contains("\t\"a\" -> \"b\" [label=\"1\"];\n"));
+		
+		StringBuilder csv = new StringBuilder();
+		DFAExporter.writeCsv(dfa, csv);
+		assertEquals("state,start,final,0,1\r\na,true,false,a,b\r\nb,false,true,a,b\r\n", csv.toString());
+		
+		System.out.println("dfa1 export pass");
+	}
+	
+	@Test
+	public void test1_11() {
+		DFA dfa = dfa1();
+		assertEquals(List.of(new DFAMatch(0, 3)), dfa.findAll("0110").collect(Collectors.toList()));
+		assertEquals(List.of(new DFAMatch(0, 2), new DFAMatch(2, 3)),
+				dfa.findAll("0110", MatchKind.LEFTMOST_FIRST).collect(Collectors.toList()));
+		assertNull(dfa.find("000"));
+		assertEquals(new DFAMatch(0, 4), dfa.find("0001"));
+		assertEquals(new DFAMatch(0, 1), dfa.find("1011", MatchKind.LEFTMOST_FIRST));
+		
+		//the searcher agrees with trying every span of the text
+		Random random = new Random(7);
+		for (int n = 0; n < 200; n++) {
+			StringBuilder text = new StringBuilder();
+			for (int i = random.nextInt(12); i > 0; i--) {
+				text.append(random.nextBoolean() ? '0' : '1');
+			}
+			for (MatchKind kind : MatchKind.values()) {
+				assertEquals(findAllSlowly(dfa, text.toString(), kind), dfa.findAll(text, kind).collect(Collectors.toList()));
+			}
+		}
+		
+		System.out.println("dfa1 find pass");
+	}
+	
+	// the matches found by calling accepts on every span
+	private List<DFAMatch> findAllSlowly(DFA dfa, String text, MatchKind kind) {
+		List<DFAMatch> matches = new ArrayList<>();
+		int from = 0;
+		while (from <= text.length()) {
+			DFAMatch match = null;
+			for (int start = from; start <= text.length() && match == null; start++) {
+				for (int end = start; end <= text.length(); end++) {
+					if (!dfa.accepts(text.substring(start, end))) continue;
+					match = new DFAMatch(start, end);
+					if (kind == MatchKind.LEFTMOST_FIRST) break;
+				}
+			}
+			if (match == null) break;
+			matches.add(match);
+			from = (match.end() == match.start()) ? match.end() + 1 : match.end();
+		}
+		return matches;
+	}
+
+	@Test
+	public void test1_12() {
+		DFA dfa = dfa1();
+		DFAProfiler profiler = dfa.enableProfiling();
+		assertSame(profiler, dfa.getProfiler());
+		assertTrue(dfa.accepts("01"));
+		assertTrue(dfa.accepts("1"));
+		assertFalse(dfa.accepts("2"));
+		
+		//runs from a, reading 0 1, then 1, then nothing on 2
+		DFAProfiler.Snapshot snapshot = profiler.snapshot();
+		assertEquals(3, snapshot.matches());
+		assertEquals(4, snapshot.visits(dfa.stateId("a")));
+		assertEquals(2, snapshot.visits(dfa.stateId("b")));
+		assertEquals(1, snapshot.hits(dfa.stateId("a"), '0'));
+		assertEquals(2, snapshot.hits(dfa.stateId("a"), '1'));
+		assertEquals(0, snapshot.hits(dfa.stateId("a"), '2'));
+		assertEquals(2, snapshot.lengthHistogram()[1]);
+		assertEquals(1, snapshot.lengthHistogram()[2]);
+		assertEquals(3, LongStream.of(snapshot.latencyHistogram()).sum());
+		
+		//every match counts as slow with a threshold of 0
+		profiler.setSlowMatchNanos(0);
+		dfa.accepts("11");
+		assertEquals(1, profiler.snapshot().slowMatches());
+		
+		//changing the DFA turns profiling off
+		dfa.addState("c");
+		assertNull(dfa.getProfiler());
+		assertTrue(dfa.accepts("01"));
+		assertEquals(4, profiler.snapshot().matches());
+		
+		System.out.println("dfa1 profiling pass");
+	}
+	
+	@Test
+	public void test1_13() throws IOException {
+		DFA dfa = dfa1();
+		//emoji go from a to b, lowercase letters from b back to a
+		assertTrue(dfa.addTransition("a", "b", 0x1F600, 0x1F64F));
+		assertTrue(dfa.addTransition("b", "a", 'a', 'z'));
+		assertTrue(dfa.addTransition("a", "b", '0', '9'));
+		
+		assertFalse(dfa.addTransition("a", "a", 0x1F64F, 0x1F650));
+		assertFalse(dfa.addTransition("a", "a", 'z', 'a'));
+		assertFalse(dfa.addTransition("a", "a", 0, Character.MAX_CODE_POINT + 1));
+		assertFalse(dfa.addTransition("a", "c", 0, 1));
+		
+		assertTrue(dfa.acceptsCodePoints("0\uD83D\uDE00"));
+		assertFalse(dfa.acceptsCodePoints("\uD83D\uDE00q"));
+		assertTrue(dfa.acceptsCodePoints("1q1"));
+		assertFalse(dfa.acceptsCodePoints("\uD83D"));
+		
+		//the char transitions of Sigma come first, the range covers the other digits
+		assertFalse(dfa.acceptsCodePoints("0"));
+		assertTrue(dfa.acceptsCodePoints("5"));
+		
+		//accepts reads chars of Sigma only
+		assertFalse(dfa.accepts("0\uD83D\uDE00"));
+		assertFalse(dfa.accepts("5"));
+		
+		//a range is kept with its state, not as a column per code point
+		CodePointDFA codePoints = dfa.freezeCodePoints();
+		assertEquals(3, codePoints.rangeCount());
+		assertTrue(codePoints.classCount() <= 3);
+		assertEquals(0, codePoints.classOf(0x1F600));
+		assertEquals(dfa.freeze().classCount(), codePoints.classCount());
+		assertTrue(codePoints.accepts(new int[] {'0', 0x1F610}));
+		
+		//operations that read Sigma only refuse a DFA with ranges instead of dropping them
+		try {
+			dfa.minimize();
+			fail("minimize dropped the ranges");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			dfa1().equivalentTo(dfa);
+			fail("equivalentTo ignored the ranges");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			dfa.union(dfa1());
+			fail("union dropped the ranges");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			dfa1().intersect(dfa1()).intersect(dfa);
+			fail("intersect dropped the ranges");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			dfa.writeTo(new ByteArrayOutputStream());
+			fail("writeTo dropped the ranges");
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			dfa.writeText(new StringWriter());
+			fail("writeText dropped the ranges");
+		} catch (UnsupportedOperationException expected) {
+		}
+		
+		System.out.println("dfa1 code point ranges pass");
+	}
+	
 //------------------- dfaI tests ----------------------//
 	private DFA dfa2() {
 		DFA dfa = new DFA();
@@ -196,6 +501,196 @@ public class DFATest {
 		System.out.println("dfa2 accept pass");
 	}
 	
+	@Test
+	public void test2_7() throws IOException {
+		DFA dfa = dfa2();
+		assertTrue(dfa.accepts(new StringBuilder("111011111111110")));
+		assertFalse(dfa.accepts(new StringBuilder("1110111111111010")));
+		assertTrue(dfa.accepts(new StringReader("111011111111110")));
+		assertFalse(dfa.accepts(new StringReader("1110111111111010")));
+		assertTrue(dfa.accepts(CharBuffer.wrap("x00x", 1, 3)));
+		assertFalse(dfa.accepts(CharBuffer.wrap("x010x", 1, 4)));
+		assertTrue(dfa.accepts(new ByteArrayInputStream("00".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+		assertFalse(dfa.accepts(new ByteArrayInputStream("101".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+		
+		//longer than one read chunk, once dead the rest is never read
+		String longInput = "00" + "1".repeat(100000);
+		assertTrue(dfa.accepts(new StringReader(longInput)));
+		assertFalse(dfa.accepts(new StringReader("2" + longInput)));
+		
+		System.out.println("dfa2 streaming accept pass");
+	}
+	
+	@Test
+	public void test2_8() throws IOException {
+		DFA dfa = dfa2();
+		Path file = Files.createTempFile("dfa2", ".txt");
+		try {
+			Files.writeString(file, "111011111111110", StandardCharsets.UTF_8);
+			assertTrue(dfa.acceptsFile(file));
+			Files.writeString(file, "1110111111111010", StandardCharsets.UTF_8);
+			assertFalse(dfa.acceptsFile(file));
+			Files.writeString(file, "00" + "1".repeat(100000), StandardCharsets.UTF_16LE);
+			assertTrue(dfa.acceptsFile(file, StandardCharsets.UTF_16LE));
+			Files.writeString(file, "00\u00e9", StandardCharsets.UTF_8);
+			assertFalse(dfa.acceptsFile(file));
+		} finally {
+			Files.delete(file);
+		}
+		
+		System.out.println("dfa2 file accept pass");
+	}
+	
+	@Test
+	public void test2_9() {
+		DFA dfa = dfa2();
+		dfa.setParallelThresholds(1000, 4);
+		CompiledDFA compiled = dfa.freeze();
+		
+		String accepted = "1".repeat(50000) + "00" + "10".repeat(50000);
+		String rejected = "1".repeat(50000) + "01".repeat(50000);
+		String dead = "1".repeat(50000) + "2" + "00".repeat(50000);
+		assertTrue(dfa.accepts(accepted));
+		assertTrue(compiled.acceptsParallel(accepted));
+		assertFalse(dfa.accepts(rejected));
+		assertFalse(compiled.acceptsParallel(rejected));
+		assertFalse(dfa.accepts(dead));
+		assertFalse(compiled.acceptsParallel(dead));
+		
+		System.out.println("dfa2 parallel accept pass");
+	}
+	
+	@Test
+	public void test2_10() {
+		DFA dfa = dfa2();
+		DFAMatcher m = dfa.newMatcher();
+		assertTrue(m.feed('1'));
+		assertTrue(m.feed("110".toCharArray(), 0, 3));
+		assertFalse(m.isAccepting());
+		int parked = m.snapshot();
+		
+		//resume the parked match on another matcher
+		DFAMatcher other = dfa.newMatcher();
+		other.restore(parked);
+		assertTrue(other.feed("11111111110"));
+		assertTrue(other.isAccepting());
+		
+		assertTrue(m.feed("1010"));
+		assertFalse(m.isAccepting());
+		assertFalse(m.feed('2'));
+		assertTrue(m.isDead());
+		m.reset();
+		assertFalse(m.isDead());
+		assertTrue(m.feed("00"));
+		assertTrue(m.isAccepting());
+		
+		System.out.println("dfa2 matcher pass");
+	}
+
+	@Test
+	public void test2_11() {
+		DFA dfa = dfa2();
+		CompiledDFA c = dfa.freeze();
+		//once 00 is seen the rest only has to be in sigma
+		assertTrue(c.isAcceptSink(c.run(c.startState(), "100", 0, 3)));
+		assertFalse(c.isAcceptSink(c.startState()));
+		assertTrue(dfa.accepts("1001011101"));
+		assertFalse(dfa.accepts("100101a101"));
+		assertFalse(dfa.accepts("1001011012"));
+		
+		//a trap state that can never reach 3 kills the run right away
+		assertTrue(dfa.addState("t"));
+		assertTrue(dfa.addTransition("2", "t", '0'));
+		assertTrue(dfa.addTransition("t", "t", '0'));
+		assertTrue(dfa.addTransition("t", "t", '1'));
+		DFAMatcher m = dfa.newMatcher();
+		assertTrue(m.feed("01"));
+		assertFalse(m.feed('0'));
+		assertTrue(m.isDead());
+		assertFalse(dfa.accepts("01000"));
+		assertTrue(dfa.accepts("0110"));
+		
+		System.out.println("dfa2 dead and sink states pass");
+	}
+
+	@Test
+	public void test2_12() throws IOException {
+		DFA dfa = dfa2();
+		dfa.addSigma('x');
+		Path file = Files.createTempFile("dfa2", ".dfa");
+		try {
+			dfa.writeTo(file);
+			MappedDFA mapped = MappedDFA.load(file);
+			assertEquals(4, mapped.stateCount());
+			assertEquals(3, mapped.symbolCount());
+			assertEquals("0", mapped.stateName(mapped.startState()));
+			assertTrue(mapped.accepts("00"));
+			assertTrue(mapped.accepts("1110111111111100"));
+			assertFalse(mapped.accepts("1110111111111010"));
+			assertFalse(mapped.accepts("00x"));
+			assertFalse(mapped.accepts(""));
+			for (String s : List.of("", "0", "00", "010", "0110", "0100", "10101", "1001", "2")) {
+				assertEquals(dfa.accepts(s), mapped.accepts(s));
+			}
+			
+			//anything else is refused
+			Files.write(file, "Q = {a}".getBytes(StandardCharsets.UTF_8));
+			try {
+				MappedDFA.load(file);
+				fail("loaded a text file");
+			} catch (IOException expected) {
+			}
+		} finally {
+			Files.delete(file);
+		}
+		
+		System.out.println("dfa2 binary round trip pass");
+	}
+
+	@Test
+	public void test2_13() {
+		DFA dfa = dfa2();
+		OffHeapDFA offHeap = dfa.freezeOffHeap();
+		assertEquals(1, offHeap.bytesPerTransition());
+		assertTrue(offHeap.offHeapBytes() > 0);
+		for (String s : List.of("", "0", "00", "010", "0110", "0100", "10101", "1001", "2", "1110111111111010")) {
+			assertEquals(dfa.accepts(s), offHeap.accepts(s));
+		}
+		assertEquals("1", offHeap.stateName(offHeap.step(offHeap.startState(), '0')));
+		
+		//closing frees the table, using it afterwards fails
+		offHeap.close();
+		offHeap.close();
+		assertEquals(0, offHeap.offHeapBytes());
+		try {
+			offHeap.accepts("00");
+			fail("matched on a closed DFA");
+		} catch (IllegalStateException expected) {
+		}
+		
+		System.out.println("dfa2 off-heap pass");
+	}
+	
+	@Test
+	public void test2_14() {
+		DFA dfa = dfa2();
+		assertEquals(List.of(new DFAMatch(0, 7)), dfa.findAll("1001000").collect(Collectors.toList()));
+		assertEquals(List.of(new DFAMatch(0, 3), new DFAMatch(3, 6)),
+				dfa.findAll("1001000", MatchKind.LEFTMOST_FIRST).collect(Collectors.toList()));
+		
+		//the searcher reports spans without building them
+		DFASearcher searcher = dfa.searcher("11001", MatchKind.LEFTMOST_FIRST);
+		assertTrue(searcher.find());
+		assertEquals(0, searcher.start());
+		assertEquals(4, searcher.end());
+		assertFalse(searcher.find());
+		searcher.reset();
+		assertTrue(searcher.find());
+		assertEquals(4, searcher.end());
+		
+		System.out.println("dfa2 find pass");
+	}
+	
 	@Test
 	public void test2_4() {
 		DFA dfa = dfa2();
@@ -347,6 +842,232 @@ public void test3_3() {
 	System.out.println("dfa3 accept pass");
 }
 
+@Test
+public void test3_7() {
+	CompiledDFA c1 = dfa1().freeze();
+	assertFalse(c1.accepts("0"));
+	assertTrue(c1.accepts("1"));
+	assertFalse(c1.accepts("00"));
+	assertTrue(c1.accepts("101"));
+	assertFalse(c1.accepts("e"));
+
+	CompiledDFA c2 = dfa2().freeze();
+	assertFalse(c2.accepts("010"));
+	assertTrue(c2.accepts("00"));
+	assertFalse(c2.accepts("101"));
+	assertTrue(c2.accepts("111011111111110"));
+	assertFalse(c2.accepts("1110111111111010"));
+
+	CompiledDFA c3 = dfa3().freeze();
+	assertTrue(c3.accepts("121212121"));
+	assertTrue(c3.accepts("12221212121"));
+	assertFalse(c3.accepts("12"));
+	assertFalse(c3.accepts("2"));
+	assertFalse(c3.accepts("1212"));
+
+	System.out.println("compiled dfa accept pass");
+}
+
+@Test
+public void test3_8() {
+	DFA dfa = new DFA();
+	for (char c = 'a'; c <= 'z'; c++) {
+		dfa.addSigma(c);
+	}
+	dfa.addSigma('\u4e00');
+	dfa.addSigma('0');
+	assertTrue(dfa.addState("s"));
+	assertTrue(dfa.addState("w"));
+	assertTrue(dfa.setStart("s"));
+	assertTrue(dfa.setFinal("w"));
+	for (char c = 'a'; c <= 'z'; c++) {
+		assertTrue(dfa.addTransition("s", "w", c));
+		assertTrue(dfa.addTransition("w", "w", c));
+	}
+	assertTrue(dfa.addTransition("s", "w", '\u4e00'));
+	assertTrue(dfa.addTransition("w", "w", '\u4e00'));
+
+	CompiledDFA c = dfa.freeze();
+	//letters and the CJK symbol share a class, '0' has no transitions and folds into class 0
+	assertEquals(2, c.classCount());
+	assertEquals(0, c.classOf('0'));
+	assertEquals(c.classOf('a'), c.classOf('\u4e00'));
+	assertTrue(c.accepts("hello\u4e00"));
+	assertFalse(c.accepts(""));
+	assertFalse(c.accepts("ab0"));
+	assertFalse(c.accepts("ab!"));
+
+	System.out.println("compiled dfa symbol classes pass");
+}
+
+@Test
+public void test3_9() {
+	DFA dfa = dfa3().minimize();
+	
+	//E merges into B and F merges into C, named after the earlier added state
+	String dfaStr = dfa.toString();
+	String expStr = "Q={GDABC}\n"
+			+ "Sigma = {2 1}\n"
+			+ "delta =\n"
+			+ "	2	1\n"
+			+ "G	G	C\n"
+			+ "D	B	D\n"
+			+ "A	C	B\n"
+			+ "B	B	D\n"
+			+ "C	G	C\n"
+			+ "q0 = A\n"
+			+ "F = {G D}\n";
+	assertTrue(dfaStr.replaceAll("\\s", "").equals(expStr.replaceAll("\\s", "")));
+	assertEquals(dfaStr, dfa.minimize().toString());
+	
+	assertTrue(dfa.accepts("121212121"));
+	assertTrue(dfa.accepts("12221212121"));
+	assertFalse(dfa.accepts("12"));
+	assertFalse(dfa.accepts("2"));
+	assertFalse(dfa.accepts("1212"));
+
+	System.out.println("dfa3 minimize pass");
+}
+
+@Test
+public void test3_10() {
+	DFA dfa = dfa3();
+	List<String> inputs = List.of("121212121", "12", "12221212121", "2", "1212", "121212121", "", "1213");
+	boolean[] expected = { true, false, true, false, false, true, false, false };
+	assertArrayEquals(expected, dfa.acceptsAll(inputs));
+	assertArrayEquals(expected, dfa.acceptsAll(inputs, true));
+
+	System.out.println("dfa3 batch accept pass");
+}
+
+@Test
+public void test3_11() {
+	DFA dfa1 = dfa1();
+	DFA dfa2 = dfa2();
+	
+	//dfa1 accepts strings ending in 1, dfa2 accepts strings containing 00
+	ProductDFA both = dfa1.intersect(dfa2);
+	assertTrue(both.accepts("0011"));
+	assertFalse(both.accepts("0010"));
+	assertFalse(both.accepts("0101"));
+	
+	ProductDFA onlyFirst = dfa1.difference(dfa2);
+	assertTrue(onlyFirst.accepts("0101"));
+	assertFalse(onlyFirst.accepts("0011"));
+	
+	ProductDFA either = dfa1.union(dfa2);
+	assertTrue(either.accepts("0010"));
+	assertTrue(either.accepts("1"));
+	assertFalse(either.accepts("010"));
+	
+	ProductDFA exactlyOne = dfa1.symmetricDifference(dfa2);
+	assertTrue(exactlyOne.accepts("0010"));
+	assertFalse(exactlyOne.accepts("0011"));
+	
+	//the materialized product and a small cache give the same answers
+	DFA materialized = both.materialize();
+	assertEquals("[a,0]", materialized.getState("[a,0]").getName());
+	assertTrue(materialized.isStart("[a,0]"));
+	assertTrue(materialized.accepts("0011"));
+	assertFalse(materialized.accepts("0010"));
+	both.setCacheLimit(2);
+	assertTrue(both.accepts("1110011"));
+	assertFalse(both.accepts("11100110"));
+	assertTrue(both.flushCount() > 0);
+	
+	System.out.println("product dfa pass");
+}
+
+@Test
+public void test3_12() {
+	DFA dfa = dfa3();
+	assertTrue(dfa.equivalentTo(dfa.minimize()));
+	assertNull(dfa.distinguishingString(dfa.minimize()));
+	
+	//dfa3 is symmetric in its two symbols, dfa1 is not
+	assertTrue(dfa.equivalentTo(dfa.swap('2', '1')));
+	String witness = dfa1().distinguishingString(dfa1().swap('1', '0'));
+	assertNotNull(witness);
+	assertEquals(1, witness.length());
+	assertTrue(dfa1().accepts(witness) != dfa1().swap('1', '0').accepts(witness));
+	
+	assertFalse(dfa.isEmpty());
+	assertFalse(dfa.isUniversal());
+	DFA empty = new DFA();
+	empty.addSigma('1');
+	assertTrue(empty.isEmpty());
+	assertTrue(empty.addState("a"));
+	assertTrue(empty.setStart("a"));
+	assertTrue(empty.addTransition("a", "a", '1'));
+	assertTrue(empty.isEmpty());
+	assertTrue(empty.setFinal("a"));
+	assertTrue(empty.isUniversal());
+	
+	System.out.println("dfa3 equivalence pass");
+}
+
+@Test
+public void test3_13() throws IOException {
+	DFA dfa = dfa3();
+	
+	//reading toString back gives the same dfa, also after a swap and with a missing transition
+	DFA read = DFAReader.read(new StringReader(dfa.toString()));
+	assertEquals(dfa.toString(), read.toString());
+	assertTrue(read.equivalentTo(dfa));
+	DFA swapped = dfa.swap('1', '2');
+	assertTrue(swapped.addState("H"));
+	assertEquals(swapped.toString(), DFAReader.read(new StringReader(swapped.toString())).toString());
+	
+	//the spaced-out layout works too
+	DFA doc = DFAReader.read(new StringReader(" Q = { a b }\nSigma = { 0 1 }\ndelta =\n\t\t0\t1\n\ta\ta\tb\n\tb\ta\tb\nq0 = a\nF = { b }"));
+	assertTrue(doc.accepts("101"));
+	assertFalse(doc.accepts("10"));
+	
+	try {
+		DFAReader.read(new StringReader("Q = {a}\nSigma = {0}\ndelta =\n\t0\t\na\tb\t\nq0 = a\nF = {}"));
+		fail("read a transition to an unknown state");
+	} catch (IOException expected) {
+		assertTrue(expected.getMessage().startsWith("line 5"));
+	}
+	try {
+		DFAReader.read(new StringReader("Q = {a -}\nSigma = {0}\ndelta =\n\t0\na\t-\n-\ta\nq0 = a\nF = {}"));
+		fail("read a state named -");
+	} catch (IOException expected) {
+		assertTrue(expected.getMessage().startsWith("line 1"));
+	}
+	
+	System.out.println("dfa3 read toString pass");
+}
+
+@Test
+public void test3_14() {
+	DFASet set = new DFASet(List.of(dfa1(), dfa2(), dfa3()));
+	assertEquals(3, set.size());
+	
+	//each input is read once for all three
+	for (String s : List.of("", "1", "00", "2", "21", "12", "0100", "2211", "1221", "3")) {
+		BitSet expected = new BitSet();
+		if (dfa1().accepts(s)) expected.set(0);
+		if (dfa2().accepts(s)) expected.set(1);
+		if (dfa3().accepts(s)) expected.set(2);
+		assertEquals(expected, set.matches(s));
+	}
+	
+	//dead automata drop out, the rest keep going
+	MultiMatcher m = set.newMatcher();
+	assertTrue(m.feed('2'));
+	assertEquals(1, m.activeCount());
+	assertTrue(m.feed("12"));
+	assertEquals(set.matches("212"), m.accepted());
+	assertFalse(m.feed('0'));
+	assertTrue(m.isDead());
+	assertTrue(m.accepted().isEmpty());
+	m.reset();
+	assertEquals(3, m.activeCount());
+	
+	System.out.println("dfa3 multi-dfa scan pass");
+}
+
 @Test
 public void test3_4() {
 	DFA dfa = dfa3();
@@ -405,5 +1126,422 @@ public void test3_6() {
 	
 	System.out.println("dfa3Swap accept pass");
 }
+
+@Test
+public void test3_15() {
+	DFA dfa = dfa3();
+	CompiledDFA compiled = dfa.freeze();
+	CompiledDFA breadthFirst = compiled.relayoutBreadthFirst();
+	CompiledDFA depthFirst = compiled.relayoutDepthFirst();
+	assertEquals("A", breadthFirst.stateName(breadthFirst.startState()));
+	assertEquals(0, breadthFirst.startState());
+	assertEquals(0, depthFirst.startState());
+	
+	//the most visited state comes first, followed by the chain it usually leads to
+	DFAProfiler profiler = new DFAProfiler(compiled);
+	profiler.accepts("1111");
+	CompiledDFA profiled = compiled.relayout(profiler.snapshot());
+	assertEquals("D", profiled.stateName(0));
+	assertEquals("A", profiled.stateName(1));
+	assertEquals("B", profiled.stateName(2));
+	
+	//renumbering changes no answers
+	for (int length = 0; length <= 6; length++) {
+		for (int bits = 0; bits < (1 << length); bits++) {
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < length; i++) {
+				s.append(((bits >> i) & 1) == 0 ? '1' : '2');
+			}
+			assertEquals(compiled.accepts(s), breadthFirst.accepts(s));
+			assertEquals(compiled.accepts(s), depthFirst.accepts(s));
+			assertEquals(compiled.accepts(s), profiled.accepts(s));
+		}
+	}
+	
+	try {
+		compiled.relayout(new DFAProfiler(dfa1().freeze()).snapshot());
+		fail("relayout with the profile of another DFA");
+	} catch (IllegalArgumentException expected) {
+	}
+	
+	System.out.println("dfa3 relayout pass");
+}
+	
+@Test
+public void test3_16() {
+	//a 60000 symbol alphabet on a chain of states, plus trap states t and u
+	DFA dfa = new DFA();
+	for (int i = 0; i < 60000; i++) {
+		dfa.addSigma((char) (0x100 + i));
+	}
+	dfa.addSigma('x');
+	dfa.addSigma('y');
+	for (int q = 0; q <= 9; q++) {
+		assertEquals(q, dfa.newState("s" + q));
+	}
+	int trap = dfa.newState("t");
+	int other = dfa.newState("u");
+	assertTrue(dfa.setStart(0));
+	assertTrue(dfa.setFinal(9));
+	for (int i = 0; i < 60000; i++) {
+		char c = (char) (0x100 + i);
+		for (int q = 0; q < 9; q++) {
+			assertTrue(dfa.addTransition(q, q + 1, c));
+		}
+		assertTrue(dfa.addTransition(9, 9, c));
+		assertTrue(dfa.addTransition(trap, trap, c));
+		assertTrue(dfa.addTransition(other, other, c));
+	}
+	assertTrue(dfa.addTransition(0, trap, 'x'));
+	for (int q = 0; q < 9; q++) {
+		assertTrue(dfa.addTransition(q, q + 1, 'y'));
+	}
+	assertTrue(dfa.addTransition(9, 9, 'y'));
+	assertTrue(dfa.addTransition(trap, other, 'y'));
+
+	CompiledDFA c = dfa.freeze();
+	//'y' only differs from the big block on the trap states, and 'x' only leads into them
+	assertEquals(2, c.classCount());
+	assertEquals(0, c.classOf('x'));
+	assertEquals(c.classOf('\u0100'), c.classOf('y'));
+	assertEquals(c.classOf('\u0100'), c.classOf((char) (0x100 + 59999)));
+	assertTrue(c.accepts("yyyyyyyyy"));
+	assertTrue(c.accepts("\u0100\u0200y\u0300yyyyyyy\u1000"));
+	assertFalse(c.accepts("yyyyyyyy"));
+	assertFalse(c.accepts("xyyyyyyyyy"));
+	assertFalse(c.accepts("yyyyyyyyyx"));
+	//'x' is in Sigma but rejects everywhere, so the final state is not an accept sink
+	assertFalse(c.isAcceptSink(9));
+
+	System.out.println("large alphabet symbol classes pass");
+}
 	
+@Test
+public void test3_17() {
+	//four final states told apart by the number of 0s before a 1, and an explicit non-final trap state t
+	DFA dfa = new DFA();
+	dfa.addSigma('0');
+	dfa.addSigma('1');
+	for (int i = 0; i < 4; i++) {
+		assertTrue(dfa.addState("f" + i));
+		assertTrue(dfa.setFinal("f" + i));
+	}
+	assertTrue(dfa.addState("t"));
+	assertTrue(dfa.setStart("f0"));
+	for (int i = 0; i < 4; i++) {
+		assertTrue(dfa.addTransition("f" + i, "f" + ((i + 1) % 4), '0'));
+	}
+	assertTrue(dfa.addTransition("f3", "f0", '1'));
+	for (int i = 0; i < 3; i++) {
+		assertTrue(dfa.addTransition("f" + i, "t", '1'));
+	}
+	assertTrue(dfa.addTransition("t", "t", '0'));
+	assertTrue(dfa.addTransition("t", "t", '1'));
+
+	//the trap state is equivalent to the implicit dead state, so it is the one state dropped
+	DFA min = dfa.minimize();
+	String expStr = "Q={f0 f1 f2 f3}\n"
+			+ "Sigma = {0 1}\n"
+			+ "delta =\n"
+			+ "	0	1\n"
+			+ "f0	f1	-\n"
+			+ "f1	f2	-\n"
+			+ "f2	f3	-\n"
+			+ "f3	f0	f0\n"
+			+ "q0 = f0\n"
+			+ "F = {f0 f1 f2 f3}\n";
+	assertEquals(expStr.replaceAll("\\s", ""), min.toString().replaceAll("\\s", ""));
+	assertNull(min.getState("t"));
+	assertTrue(min.equivalentTo(dfa));
+
+	System.out.println("minimize trap state pass");
+}
+	
+@Test
+public void test3_18() {
+	//the tuples (a, "b,c") and ("a,b", c) would both be named [a,b,c] without escaping
+	DFA left = new DFA();
+	left.addSigma('x');
+	assertTrue(left.addState("a"));
+	assertTrue(left.addState("a,b"));
+	assertTrue(left.setStart("a"));
+	assertTrue(left.setFinal("a,b"));
+	assertTrue(left.addTransition("a", "a,b", 'x'));
+	assertTrue(left.addTransition("a,b", "a,b", 'x'));
+	DFA right = new DFA();
+	right.addSigma('x');
+	assertTrue(right.addState("b,c"));
+	assertTrue(right.addState("c"));
+	assertTrue(right.setStart("b,c"));
+	assertTrue(right.setFinal("c"));
+	assertTrue(right.addTransition("b,c", "c", 'x'));
+	assertTrue(right.addTransition("c", "c", 'x'));
+	
+	DFA materialized = left.intersect(right).materialize();
+	assertNotNull(materialized.getState("[a,b\\,c]"));
+	assertNotNull(materialized.getState("[a\\,b,c]"));
+	assertTrue(materialized.isStart("[a,b\\,c]"));
+	assertFalse(materialized.accepts(""));
+	assertTrue(materialized.accepts("x"));
+	assertTrue(materialized.accepts("xx"));
+	
+	//an operand state named "-" is told apart from an operand that has rejected
+	DFA dash = new DFA();
+	dash.addSigma('x');
+	assertTrue(dash.addState("-"));
+	assertTrue(dash.setStart("-"));
+	assertTrue(dash.setFinal("-"));
+	DFA either = dash.union(left).materialize();
+	assertTrue(either.isStart("[\\-,a]"));
+	assertNotNull(either.getState("[-,a\\,b]"));
+	assertTrue(either.accepts(""));
+	assertTrue(either.accepts("x"));
+	
+	System.out.println("product state names pass");
+}
+	
+@Test
+public void test3_19() {
+	DFA dfa = dfa1();
+	DFA dfaSwap = dfa.swap('1', '0');
+	Map<Character, DFAState> transitions = ((DFAState) dfa.getState("a")).getTransitions();
+	assertEquals(2, transitions.size());
+	
+	//the map is backed by the dfa in both directions
+	assertTrue(dfa.addTransition("a", "a", '1'));
+	assertSame(dfa.getState("a"), transitions.get('1'));
+	assertSame(dfa.getState("a"), transitions.put('1', (DFAState) dfa.getState("b")));
+	assertTrue(dfa.accepts("1"));
+	assertSame(dfa.getState("a"), transitions.remove('0'));
+	assertFalse(transitions.containsKey('0'));
+	assertEquals(1, transitions.size());
+	assertFalse(dfa.accepts("0"));
+	transitions.clear();
+	assertTrue(transitions.isEmpty());
+	assertFalse(dfa.accepts("1"));
+	
+	//the swapped dfa keeps the transitions it was made with
+	assertTrue(dfaSwap.accepts("0"));
+	assertTrue(dfaSwap.accepts("10"));
+	
+	try {
+		transitions.put('2', (DFAState) dfa.getState("b"));
+		fail("put a symbol that is not in Sigma");
+	} catch (IllegalArgumentException expected) {
+	}
+	try {
+		transitions.put('0', new DFAState("c"));
+		fail("put a state that is not in the dfa");
+	} catch (IllegalArgumentException expected) {
+	}
+	
+	System.out.println("live transition map pass");
+}
+	
+@Test
+public void test3_20() {
+	//a|a+b: after each single-a match the longest thread runs on to the end of the text looking for a b
+	DFA dfa = new DFA();
+	dfa.addSigma('a');
+	dfa.addSigma('b');
+	assertTrue(dfa.addState("s"));
+	assertTrue(dfa.addState("a"));
+	assertTrue(dfa.addState("aa"));
+	assertTrue(dfa.addState("ab"));
+	assertTrue(dfa.setStart("s"));
+	assertTrue(dfa.setFinal("a"));
+	assertTrue(dfa.setFinal("ab"));
+	assertTrue(dfa.addTransition("s", "a", 'a'));
+	assertTrue(dfa.addTransition("a", "aa", 'a'));
+	assertTrue(dfa.addTransition("aa", "aa", 'a'));
+	assertTrue(dfa.addTransition("a", "ab", 'b'));
+	assertTrue(dfa.addTransition("aa", "ab", 'b'));
+	
+	//every char is read once over all the matches, not once per match
+	final int n = 200000;
+	final String text = "a".repeat(n);
+	final long[] reads = new long[1];
+	CharSequence counted = new CharSequence() {
+		public int length() {
+			return n;
+		}
+		
+		public char charAt(int index) {
+			reads[0]++;
+			return text.charAt(index);
+		}
+		
+		public CharSequence subSequence(int start, int end) {
+			return text.subSequence(start, end);
+		}
+	};
+	DFASearcher searcher = dfa.searcher(counted, MatchKind.LEFTMOST_LONGEST);
+	int matches = 0;
+	while (searcher.find()) {
+		assertEquals(matches, searcher.start());
+		assertEquals(matches + 1, searcher.end());
+		matches++;
+	}
+	assertEquals(n, matches);
+	assertTrue(reads[0] <= n);
+	
+	//a b at the end turns the whole text into one match
+	assertEquals(List.of(new DFAMatch(0, 7)), dfa.findAll("aaaaaab").collect(Collectors.toList()));
+	
+	System.out.println("linear search pass");
+}
+	
+@Test
+public void test3_21() throws InterruptedException {
+	DFA dfa = dfa1();
+	DFAProfiler profiler = dfa.enableProfiling();
+	
+	//the counts of threads that have ended stay in the totals
+	Thread[] threads = new Thread[4];
+	for (int i = 0; i < threads.length; i++) {
+		threads[i] = new Thread(() -> {
+			for (int j = 0; j < 1000; j++) {
+				assertTrue(dfa.accepts("01"));
+			}
+		});
+		threads[i].start();
+	}
+	for (Thread t : threads) {
+		t.join();
+	}
+	DFAProfiler.Snapshot snapshot = profiler.snapshot();
+	assertEquals(4000, snapshot.matches());
+	assertEquals(4000, snapshot.hits(dfa.stateId("a"), '0'));
+	assertEquals(4000, snapshot.hits(dfa.stateId("a"), '1'));
+	
+	//and are still counted once after a new thread starts counting
+	assertTrue(dfa.accepts("1"));
+	snapshot = profiler.snapshot();
+	assertEquals(4001, snapshot.matches());
+	assertEquals(4001, snapshot.hits(dfa.stateId("a"), '1'));
+	assertEquals(8001, snapshot.visits(dfa.stateId("a")));
+	System.out.println("ended thread profile pass");
+}
+@Test
+public void test3_22() {
+	//a chain of states, each with ranges of its own that no other state has
+	final int n = 20000;
+	DFA dfa = new DFA();
+	dfa.addSigma('x');
+	for (int i = 0; i <= n; i++) {
+		assertTrue(dfa.addState("q" + i));
+	}
+	assertTrue(dfa.setStart("q0"));
+	assertTrue(dfa.setFinal("q" + n));
+	StringBuilder input = new StringBuilder();
+	for (int i = 0; i < n; i++) {
+		int lo = 0x10000 + 4 * i;
+		assertTrue(dfa.addTransition("q" + i, "q" + (i + 1), lo, lo + 1));
+		assertTrue(dfa.addTransition("q" + i, "q0", lo + 2, lo + 2));
+		input.appendCodePoint(lo + 1);
+	}
+	
+	//the ranges are kept per state, so the table does not grow with states x ranges
+	CodePointDFA codePoints = dfa.freezeCodePoints();
+	assertEquals(2 * n, codePoints.rangeCount());
+	assertEquals(1, codePoints.classCount());
+	assertTrue(codePoints.accepts(input));
+	assertTrue(dfa.acceptsCodePoints(input));
+	assertFalse(dfa.acceptsCodePoints(input.substring(2)));
+	assertEquals(0, codePoints.step(1, 0x10000 + 4 + 2));
+	assertEquals(CompiledDFA.DEAD, codePoints.step(1, 0x10000 + 2));
+	
+	System.out.println("per-state ranges pass");
+}
+@Test
+public void test3_23() throws Exception {
+	DFA dfa = dfa1();
+	ExecutorService pool = Executors.newSingleThreadExecutor();
+	try {
+		//a pooled thread that stays alive matches on the first profiler
+		DFAProfiler first = dfa.enableProfiling();
+		assertTrue(pool.submit(() -> dfa.accepts("01")).get());
+		WeakReference<DFAProfiler> old = new WeakReference<>(first);
+		first = null;
+		
+		//changing the DFA drops the profiler, and the pool thread matches on a new one
+		assertTrue(dfa.addTransition("b", "b", '0'));
+		DFAProfiler second = dfa.enableProfiling();
+		assertTrue(pool.submit(() -> dfa.accepts("010")).get());
+		assertEquals(1, second.snapshot().matches());
+		
+		//nothing the threads kept refers to the old profiler or its counters
+		for (int i = 0; i < 20 && old.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(old.get());
+	} finally {
+		pool.shutdown();
+	}
+	System.out.println("dropped profiler pass");
+}
+@Test
+public void test3_24() {
+	DFA left = new DFA();
+	DFA right = new DFA();
+	for (DFA d : new DFA[] { left, right }) {
+		d.addSigma('a');
+		d.addSigma('b');
+		assertTrue(d.addState("p"));
+		assertTrue(d.addState("q"));
+		assertTrue(d.addState("r"));
+		assertTrue(d.setStart("p"));
+		assertTrue(d.setFinal("r"));
+		assertTrue(d.addTransition("p", "q", 'a'));
+	}
+	assertTrue(left.addTransition("q", "r", 'a'));
+	assertTrue(right.addTransition("q", "r", 'b'));
+	
+	//after a both operands are alive, but one wants a and the other b, so nothing is left past the start
+	DFA both = left.intersect(right).materialize();
+	assertTrue(both.isStart("[p,p]"));
+	assertNull(both.getState("[q,q]"));
+	assertFalse(both.accepts("a"));
+	
+	//once the right operand is in a sink that accepts everything, nothing is left of the difference
+	DFA sink = new DFA();
+	sink.addSigma('a');
+	sink.addSigma('b');
+	assertTrue(sink.addState("s"));
+	assertTrue(sink.addState("t"));
+	assertTrue(sink.setStart("s"));
+	assertTrue(sink.setFinal("t"));
+	assertTrue(sink.addTransition("s", "t", 'a'));
+	assertTrue(sink.addTransition("t", "t", 'a'));
+	assertTrue(sink.addTransition("t", "t", 'b'));
+	assertTrue(left.addTransition("p", "r", 'b'));
+	DFA difference = left.difference(sink).materialize();
+	assertNull(difference.getState("[q,t]"));
+	assertNotNull(difference.getState("[r,-]"));
+	assertTrue(difference.accepts("b"));
+	assertFalse(difference.accepts("aa"));
+	
+	System.out.println("materialize drops empty tuples pass");
+}
+@Test
+public void test3_25() {
+	DFA dfa = dfa2();
+	DFAProfiler profiler = dfa.enableProfiling();
+	assertTrue(dfa.accepts("100"));
+	
+	//new thresholds keep the profiler and its counts, and it matches on the compiled form accepts uses
+	dfa.setParallelThresholds(1000, 4);
+	assertSame(profiler, dfa.getProfiler());
+	assertSame(dfa.freeze(), profiler.getDFA());
+	assertTrue(dfa.accepts("1100"));
+	assertEquals(2, profiler.snapshot().matches());
+	
+	//setting the same thresholds again changes nothing
+	CompiledDFA compiled = dfa.freeze();
+	dfa.setParallelThresholds(1000, 4);
+	assertSame(compiled, dfa.freeze());
+	
+	System.out.println("parallel thresholds keep the profiler pass");
+}
 }
@@ -0,0 +1,228 @@
+package test.nfa;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fa.dfa.DFA;
+import fa.nfa.NFA;
+import fa.nfa.NFAState;
+
+public class NFATest {
+	
+	
+	//------------------- nfa1 tests ----------------------//
+	// strings over {0, 1} that end in 1
+	private NFA nfa1() {
+		NFA nfa = new NFA();
+		nfa.addSigma('0');
+		nfa.addSigma('1');
+		
+		assertTrue(nfa.addState("a"));
+		assertTrue(nfa.addState("b"));
+		assertTrue(nfa.setStart("a"));
+		assertTrue(nfa.setFinal("b"));
+		
+		assertFalse(nfa.addState("a"));
+		assertFalse(nfa.setStart("c"));
+		
+		assertTrue(nfa.addTransition("a", Set.of("a"), '0'));
+		assertTrue(nfa.addTransition("a", Set.of("a", "b"), '1'));
+		
+		assertFalse(nfa.addTransition("c", Set.of("a"), '1'));
+		assertFalse(nfa.addTransition("a", Set.of("c"), '1'));
+		assertFalse(nfa.addTransition("a", Set.of("b"), '2'));
+		
+		return nfa;
+	}
+	
+	@Test
+	public void test1_1() {
+		NFA nfa = nfa1();
+		assertTrue(nfa.isStart("a"));
+		assertTrue(nfa.isFinal("b"));
+		assertEquals(Set.of('0', '1'), nfa.getSigma());
+		assertFalse(nfa.isDFA());
+		NFAState a = nfa.getState("a");
+		assertEquals(Set.of(a, nfa.getState("b")), nfa.getToState(a, '1'));
+		assertTrue(nfa.getToState(nfa.getState("b"), '0').isEmpty());
+		System.out.println("nfa1 instantiation pass");
+	}
+	
+	@Test
+	public void test1_2() throws Exception {
+		NFA nfa = nfa1();
+		assertTrue(nfa.accepts("1"));
+		assertTrue(nfa.accepts("0101"));
+		assertFalse(nfa.accepts(""));
+		assertFalse(nfa.accepts("10"));
+		assertFalse(nfa.accepts("12"));
+		assertTrue(nfa.accepts(new StringReader("0011")));
+		System.out.println("nfa1 accept pass");
+	}
+	
+	@Test
+	public void test1_3() {
+		DFA dfa = nfa1().toDFA();
+		assertEquals("Q = {[a] [a,b]}\n"
+				+ "Sigma = {0 1}\n"
+				+ "delta =\n"
+				+ "\t0\t1\t\n"
+				+ "[a]\t[a]\t[a,b]\t\n"
+				+ "[a,b]\t[a]\t[a,b]\t\n"
+				+ "q0 = [a]\n"
+				+ "F = {[a,b]}", dfa.toString());
+		System.out.println("nfa1 toDFA pass");
+	}
+	
+	//------------------- nfa2 tests ----------------------//
+	// 0*1* with epsilon transitions: a --e--> b --e--> c
+	private NFA nfa2() {
+		NFA nfa = new NFA();
+		nfa.addSigma('0');
+		nfa.addSigma('1');
+		nfa.addSigma('e');
+		nfa.addState("a");
+		nfa.addState("b");
+		nfa.addState("c");
+		nfa.setStart("a");
+		nfa.setFinal("c");
+		assertTrue(nfa.addTransition("a", Set.of("a"), '0'));
+		assertTrue(nfa.addTransition("a", Set.of("b"), 'e'));
+		assertTrue(nfa.addTransition("b", Set.of("b"), '1'));
+		assertTrue(nfa.addTransition("b", Set.of("c"), 'e'));
+		return nfa;
+	}
+	
+	@Test
+	public void test2_1() {
+		NFA nfa = nfa2();
+		assertEquals(Set.of('0', '1'), nfa.getSigma());
+		assertEquals(Set.of(nfa.getState("a"), nfa.getState("b"), nfa.getState("c")), nfa.eClosure(nfa.getState("a")));
+		assertEquals(Set.of(nfa.getState("c")), nfa.eClosure(nfa.getState("c")));
+		assertTrue(nfa.accepts(""));
+		assertTrue(nfa.accepts("0011"));
+		assertTrue(nfa.accepts("111"));
+		assertFalse(nfa.accepts("010"));
+		
+		//changing the NFA is seen by the next accepts
+		nfa.getState("c").addTransition('0', nfa.getState("a"));
+		assertTrue(nfa.accepts("010"));
+		System.out.println("nfa2 accept pass");
+	}
+	
+	@Test
+	public void test2_2() {
+		NFA nfa = nfa2();
+		DFA dfa = nfa.toDFA();
+		assertEquals(2, dfa.stateCount());
+		for (String s : new String[] {"", "0", "1", "01", "10", "0011", "0110", "111000"}) {
+			assertEquals(nfa.accepts(s), dfa.accepts(s));
+		}
+		System.out.println("nfa2 toDFA pass");
+	}
+	
+	//------------------- nfa3 tests ----------------------//
+	// strings whose 8th symbol from the end is 1, whose smallest DFA has 2^8 states
+	private NFA nfa3() {
+		NFA nfa = new NFA();
+		nfa.addSigma('0');
+		nfa.addSigma('1');
+		for (int i = 0; i <= 8; i++) {
+			nfa.addState("q" + i);
+		}
+		nfa.setStart("q0");
+		nfa.setFinal("q8");
+		nfa.addTransition("q0", Set.of("q0"), '0');
+		nfa.addTransition("q0", Set.of("q0", "q1"), '1');
+		for (int i = 1; i < 8; i++) {
+			nfa.addTransition("q" + i, Set.of("q" + (i + 1)), '0');
+			nfa.addTransition("q" + i, Set.of("q" + (i + 1)), '1');
+		}
+		return nfa;
+	}
+	
+	@Test
+	public void test3_1() {
+		NFA nfa = nfa3();
+		DFA dfa = nfa.toDFA();
+		assertEquals(256, dfa.stateCount());
+		assertEquals(256, dfa.minimize().stateCount());
+		System.out.println("nfa3 toDFA pass");
+	}
+	
+	@Test
+	public void test3_2() {
+		NFA nfa = nfa3();
+		DFA dfa = nfa.toDFA();
+		//filling a small cache the first time is not thrashing, so it is flushed rather than given up on
+		nfa.setCacheSize(4);
+		assertFalse(nfa.accepts("11111"));
+		assertEquals(1, nfa.cacheFlushes());
+		assertEquals(0, nfa.cacheFallbacks());
+		
+		//a cache far smaller than the DFA thrashes, and matching falls back to simulating the NFA
+		Random random = new Random(3);
+		for (int n = 0; n < 50; n++) {
+			StringBuilder s = new StringBuilder();
+			for (int i = random.nextInt(200); i > 0; i--) {
+				s.append(random.nextBoolean() ? '0' : '1');
+			}
+			assertEquals(dfa.accepts(s), nfa.accepts(s));
+		}
+		assertTrue(nfa.cacheFallbacks() > 0);
+		
+		//with room for every state nothing is flushed
+		nfa.setCacheSize(512);
+		assertTrue(nfa.accepts("010000000"));
+		assertFalse(nfa.accepts("001000000"));
+		assertEquals(0, nfa.cacheFlushes());
+		assertEquals(0, nfa.cacheFallbacks());
+		System.out.println("nfa3 cache pass");
+	}
+	
+	@Test
+	public void test3_3() {
+		//the sets {a, b} and {"a,b"} would both be named [a,b] without escaping
+		NFA nfa = new NFA();
+		nfa.addSigma('0');
+		nfa.addSigma('1');
+		assertTrue(nfa.addState("s"));
+		assertTrue(nfa.addState("a"));
+		assertTrue(nfa.addState("b"));
+		assertTrue(nfa.addState("a,b"));
+		//like a DFA, an NFA has no state without a name
+		assertFalse(nfa.addState(null));
+		assertTrue(nfa.setStart("s"));
+		assertTrue(nfa.setFinal("a,b"));
+		assertTrue(nfa.addTransition("s", Set.of("a", "b"), '0'));
+		assertTrue(nfa.addTransition("s", Set.of("a,b"), '1'));
+		
+		DFA dfa = nfa.toDFA();
+		assertEquals(3, dfa.stateCount());
+		assertNotNull(dfa.getState("[a,b]"));
+		assertNotNull(dfa.getState("[a\\,b]"));
+		assertFalse(dfa.accepts("0"));
+		assertTrue(dfa.accepts("1"));
+		
+		//a state of an nfa only takes transitions the nfa itself would
+		NFAState s = nfa.getState("s");
+		try {
+			s.addTransition('2', nfa.getState("a"));
+			fail("added a transition on a symbol not in Sigma");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			s.addTransition('0', new NFAState("c"));
+			fail("added a transition to a state of no nfa");
+		} catch (IllegalArgumentException expected) {
+		}
+		s.addTransition('e', nfa.getState("a,b"));
+		assertTrue(nfa.accepts(""));
+		System.out.println("nfa toDFA names pass");
+	}
+}